@@ -0,0 +1,91 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import com.google.common.collect.Sets;
+import de.huxhorn.sulky.ulid.ULID;
+import no.ssb.rawdata.api.RawdataMessage;
+import no.ssb.rawdata.converter.app.sirius.benchmark.SyntheticRawdataMessages;
+import no.ssb.rawdata.converter.util.RawdataMessageAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the way SiriusRawdataConverter#isConvertible checks for required rawdata items:
+ * <ul>
+ *     <li>containsAll - the previous approach, with a RawdataMessageAdapter per message and a set difference on miss</li>
+ *     <li>requiredItems - the compiled bitmask check</li>
+ * </ul>
+ *
+ * <p>Run with the gc profiler to see allocations per operation, e.g.
+ * <code>make bench JMH_ARGS="RequiredItemsBenchmark -prof gc"</code>. The requiredItems hit case should report
+ * (close to) 0 B/op in gc.alloc.rate.norm.</p>
+ *
+ * <p>Lives in the converter package since RequiredItems is package private.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequiredItemsBenchmark {
+
+    private static final Set<String> REQUIRED_ITEMS = Set.of("entry", "skattemelding");
+
+    private RequiredItems requiredItems;
+    private RawdataMessage complete;
+    private RawdataMessage incomplete;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        requiredItems = new RequiredItems(REQUIRED_ITEMS, Duration.ofMinutes(1));
+        complete = SyntheticRawdataMessages.generate("sirius-skattemelding-utflatet-2019-v1_2", "2019", 1, 1).get(0);
+        incomplete = RawdataMessage.builder()
+          .ulid(new ULID().nextValue())
+          .orderingGroup(SyntheticRawdataMessages.TOPIC)
+          .sequenceNumber(1)
+          .position("1")
+          .put("entry", complete.get("entry"))
+          .build();
+    }
+
+    @Benchmark
+    public Object containsAllHit() {
+        return legacyCheck(complete);
+    }
+
+    @Benchmark
+    public Object containsAllMiss() {
+        return legacyCheck(incomplete);
+    }
+
+    @Benchmark
+    public long requiredItemsHit() {
+        return requiredItems.missing(complete);
+    }
+
+    @Benchmark
+    public long requiredItemsMiss() {
+        return requiredItems.missing(incomplete);
+    }
+
+    private static Object legacyCheck(RawdataMessage rawdataMessage) {
+        if (! rawdataMessage.keys().containsAll(REQUIRED_ITEMS)) {
+            return Sets.difference(REQUIRED_ITEMS, rawdataMessage.keys()).toString();
+        }
+        return new RawdataMessageAdapter(rawdataMessage);
+    }
+
+}
@@ -0,0 +1,52 @@
+package no.ssb.rawdata.converter.app.sirius.benchmark;
+
+import no.ssb.rawdata.converter.app.sirius.xml.XmlHeaderReader;
+import no.ssb.rawdata.converter.util.Xml;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the way the hendelse.gjelderPeriode value is looked up by SiriusRawdataConverter#isConvertible:
+ * <ul>
+ *     <li>genericMap - the previous approach, turning the whole "entry" item into a generic map</li>
+ *     <li>headerReader - streaming lookup that stops as soon as the element has been read</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IsConvertibleBenchmark {
+
+    private static final byte[] ENTRY = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+      + "<hendelse xmlns=\"urn:no:skatteetaten:datasamarbeid:hendelser:v1\">"
+      + "<sekvensnummer>123456789</sekvensnummer>"
+      + "<identifikator>01010112345</identifikator>"
+      + "<gjelderPeriode>2019</gjelderPeriode>"
+      + "<registreringstidspunkt>2020-09-21T17:35:00.000+02:00</registreringstidspunkt>"
+      + "<hendelsetype>ny</hendelsetype>"
+      + "</hendelse>").getBytes(StandardCharsets.UTF_8);
+
+    @Benchmark
+    public Object genericMap() {
+        return Xml.toGenericMap(new String(ENTRY, StandardCharsets.UTF_8)).get("gjelderPeriode");
+    }
+
+    @Benchmark
+    public Object headerReader() {
+        return XmlHeaderReader.childElementValue(ENTRY, "gjelderPeriode").orElse(null);
+    }
+
+}
@@ -0,0 +1,245 @@
+package no.ssb.rawdata.converter.app.sirius.benchmark;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import no.ssb.rawdata.api.RawdataClient;
+import no.ssb.rawdata.api.RawdataClientInitializer;
+import no.ssb.rawdata.api.RawdataConsumer;
+import no.ssb.rawdata.api.RawdataMessage;
+import no.ssb.rawdata.converter.app.sirius.DefaultRawdataConverterFactory;
+import no.ssb.rawdata.converter.app.sirius.SiriusRawdataConverterConfig;
+import no.ssb.rawdata.converter.core.convert.RawdataConverter;
+import no.ssb.rawdata.converter.core.job.ConverterJobConfig;
+import no.ssb.rawdata.converter.util.Json;
+import no.ssb.rawdata.payload.encryption.EncryptionClient;
+import no.ssb.service.provider.api.ProviderConfigurator;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays rawdata messages from a local filesystem rawdata provider (the layout used by
+ * <code>conf/application-local.yml</code>) through a converter created by DefaultRawdataConverterFactory, and
+ * reports throughput, skip reasons and latency percentiles per stage. Nothing is written to any target storage.
+ *
+ * <p>Example: <code>make replay REPLAY_ARGS="--storage-folder ../localenv/rawdata/skatt --topic skatt-testtopic-202009211735 --job-config job.json"</code></p>
+ *
+ * <p>Options:</p>
+ * <ul>
+ *     <li>--storage-folder - filesystem provider storage folder (required)</li>
+ *     <li>--topic - the rawdata topic to replay (required)</li>
+ *     <li>--job-config - json file with the converter job config (ConverterJobConfig), with the converter settings
+ *     (SiriusRawdataConverterConfig) in appConfig, e.g. <code>{"jobName": "replay", "appConfig": {"period": "2019"}}</code>
+ *     (required). Pseudo rules are not supported, since pseudo secrets are not available offline.</li>
+ *     <li>--max-messages - max number of messages to replay (default: all)</li>
+ *     <li>--samples - number of messages to init the converter with. The samples are replayed as well, once the
+ *     converter is initialized. If validateSamples is set in appConfig, samples are dry converted, and field coverage
+ *     is reported per data element (default: 1)</li>
+ *     <li>--encryption-key, --encryption-salt - decrypt rawdata items with these credentials</li>
+ * </ul>
+ */
+public class ReplayTool {
+
+    private static final String METRICS_PREFIX = "sirius.converter.";
+    private static final double[] PERCENTILES = {0.5, 0.99};
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parseArgs(args);
+        String storageFolder = required(opts, "storage-folder");
+        String topic = required(opts, "topic");
+        long maxMessages = Long.parseLong(opts.getOrDefault("max-messages", String.valueOf(Long.MAX_VALUE)));
+        int sampleCount = Integer.parseInt(opts.getOrDefault("samples", "1"));
+
+        ConverterJobConfig jobConfig = Json.toObject(ConverterJobConfig.class, Files.readString(Path.of(required(opts, "job-config"))));
+        if (jobConfig.getPseudoRules() != null && ! jobConfig.getPseudoRules().isEmpty()) {
+            throw new IllegalArgumentException("Pseudo rules are not supported by the replay tool. Remove pseudo-rules from the job config.");
+        }
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                return DistributionStatisticConfig.builder().percentiles(PERCENTILES).build().merge(config);
+            }
+        });
+        DefaultRawdataConverterFactory factory = new DefaultRawdataConverterFactory(null, new SiriusRawdataConverterConfig(), registry);
+        RawdataConverter converter = factory.newRawdataConverter(jobConfig);
+        EncryptionClient encryptionClient = new EncryptionClient();
+        byte[] secretKey = secretKeyOf(encryptionClient, opts.get("encryption-key"), opts.get("encryption-salt"));
+
+        Timer isConvertibleTimer = registry.timer("replay.isconvertible");
+        Timer convertTimer = registry.timer("replay.convert");
+        Replayer replayer = new Replayer(converter, isConvertibleTimer, convertTimer);
+        long received = 0;
+        long start = 0;
+
+        try (RawdataClient client = ProviderConfigurator.configure(providerConfig(storageFolder), "filesystem", RawdataClientInitializer.class);
+             RawdataConsumer consumer = client.consumer(topic)) {
+
+            // Messages are held back until the converter is initialized with the samples, and then replayed as well
+            List<RawdataMessage> samples = new ArrayList<>();
+            boolean initialized = false;
+            RawdataMessage msg;
+            while (received < maxMessages && (msg = consumer.receive(1, TimeUnit.SECONDS)) != null) {
+                received++;
+                msg = decrypted(encryptionClient, msg, secretKey);
+                if (initialized) {
+                    replayer.replay(msg);
+                    continue;
+                }
+
+                samples.add(msg);
+                if (samples.size() >= sampleCount) {
+                    converter.init(samples);
+                    initialized = true;
+                    start = System.nanoTime();
+                    samples.forEach(replayer::replay);
+                }
+            }
+
+            // Fewer messages than samples
+            if (! initialized && ! samples.isEmpty()) {
+                converter.init(samples);
+                start = System.nanoTime();
+                samples.forEach(replayer::replay);
+            }
+        }
+        finally {
+            factory.close();
+        }
+
+        long messages = replayer.messages;
+        long converted = replayer.converted;
+        long failed = replayer.failed;
+        long records = (long) registry.find(METRICS_PREFIX + "records").counters().stream().mapToDouble(Counter::count).sum();
+        double seconds = (start == 0) ? 0 : (System.nanoTime() - start) / 1e9;
+        System.out.printf("%nReplayed %d messages from %s in %.1f s%n", messages, topic, seconds);
+        System.out.printf("  converted: %d, failed: %d%n", converted, failed);
+        System.out.printf("  messages/sec: %.1f%n", (seconds > 0) ? messages / seconds : 0);
+        System.out.printf("  records/sec:  %.1f%n", (seconds > 0) ? records / seconds : 0);
+
+        System.out.printf("%nSkip reasons%n");
+        registry.find(METRICS_PREFIX + "skipped").counters().forEach(counter ->
+          System.out.printf("  %-20s %d%n", counter.getId().getTag("reason"), (long) counter.count())
+        );
+
+        System.out.printf("%nLatency per stage (ms)%n");
+        printTimer("isConvertible", isConvertibleTimer);
+        printTimer("convert", convertTimer);
+        registry.find(METRICS_PREFIX + "convertxml").timers().forEach(timer ->
+          printTimer("convertxml " + timer.getId().getTag("schema"), timer)
+        );
+        registry.find(METRICS_PREFIX + "pseudonymization").timers().forEach(timer ->
+          printTimer("pseudonymization", timer)
+        );
+
+        System.out.printf("%nRecords per target%n");
+        registry.find(METRICS_PREFIX + "records").counters().forEach(counter ->
+          System.out.printf("  %-20s %d%n", counter.getId().getTag("target"), (long) counter.count())
+        );
+    }
+
+    private static void printTimer(String stage, Timer timer) {
+        StringBuilder sb = new StringBuilder(String.format("  %-60s count=%-8d", stage, timer.count()));
+        for (ValueAtPercentile p : timer.takeSnapshot().percentileValues()) {
+            sb.append(String.format(" p%-3s=%8.3f", Math.round(p.percentile() * 100), p.value(TimeUnit.MILLISECONDS)));
+        }
+        System.out.println(sb);
+    }
+
+    private static Map<String, String> providerConfig(String storageFolder) throws Exception {
+        return Map.of(
+          "local-temp-folder", Files.createTempDirectory("sirius-replay").toString(),
+          "avro-file.max.seconds", "3600",
+          "avro-file.max.bytes", "10485760",
+          "avro-file.sync.interval", "500000",
+          "filesystem.storage-folder", storageFolder,
+          "listing.min-interval-seconds", "0"
+        );
+    }
+
+    private static byte[] secretKeyOf(EncryptionClient encryptionClient, String key, String salt) {
+        if (key == null || salt == null) {
+            return null;
+        }
+        return encryptionClient.generateSecretKey(key.toCharArray(), salt.getBytes(StandardCharsets.UTF_8)).getEncoded();
+    }
+
+    private static RawdataMessage decrypted(EncryptionClient encryptionClient, RawdataMessage msg, byte[] secretKey) {
+        if (secretKey == null) {
+            return msg;
+        }
+
+        var builder = RawdataMessage.builder()
+          .ulid(msg.ulid())
+          .orderingGroup(msg.orderingGroup())
+          .sequenceNumber(msg.sequenceNumber())
+          .position(msg.position());
+        msg.keys().forEach(key -> builder.put(key, encryptionClient.decrypt(secretKey, msg.get(key))));
+        return builder.build();
+    }
+
+    /**
+     * Runs messages through isConvertible and convert, the same way the converter framework does
+     */
+    private static class Replayer {
+        private final RawdataConverter converter;
+        private final Timer isConvertibleTimer;
+        private final Timer convertTimer;
+        private long messages;
+        private long converted;
+        private long failed;
+
+        private Replayer(RawdataConverter converter, Timer isConvertibleTimer, Timer convertTimer) {
+            this.converter = converter;
+            this.isConvertibleTimer = isConvertibleTimer;
+            this.convertTimer = convertTimer;
+        }
+
+        void replay(RawdataMessage msg) {
+            messages++;
+            try {
+                if (isConvertibleTimer.recordCallable(() -> converter.isConvertible(msg))) {
+                    convertTimer.recordCallable(() -> converter.convert(msg));
+                    converted++;
+                }
+            }
+            catch (Exception e) {
+                failed++;
+                System.err.println("Failed to convert message at position " + msg.position() + ": " + e);
+            }
+        }
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (! args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Invalid arguments: " + Arrays.toString(args) + ". Expected --<option> <value> pairs.");
+            }
+            opts.put(args[i].substring(2), args[++i]);
+        }
+        return opts;
+    }
+
+    private static String required(Map<String, String> opts, String name) {
+        String value = opts.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing required option --" + name);
+        }
+        return value;
+    }
+
+}
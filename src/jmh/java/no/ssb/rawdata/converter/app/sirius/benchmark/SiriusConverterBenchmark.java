@@ -0,0 +1,139 @@
+package no.ssb.rawdata.converter.app.sirius.benchmark;
+
+import no.ssb.rawdata.api.RawdataMessage;
+import no.ssb.rawdata.converter.app.sirius.SiriusRawdataConverter;
+import no.ssb.rawdata.converter.app.sirius.SiriusRawdataConverterConfig;
+import no.ssb.rawdata.converter.app.sirius.XmlConversionPlan;
+import no.ssb.rawdata.converter.app.sirius.schema.SchemaDescriptor;
+import no.ssb.rawdata.converter.app.sirius.schema.SiriusSchemas;
+import no.ssb.rawdata.converter.core.convert.ValueInterceptorChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the sirius conversion hot path, using synthetic rawdata messages for each skattemelding schema.
+ *
+ * <p>Pseudonymization is simulated by a deterministic stand-in interceptor that transforms the same fields as the
+ * default pseudo rules, since real FPE secrets are not available offline.</p>
+ *
+ * <p>Example: <code>make bench JMH_ARGS="SiriusConverterBenchmark -p repetitions=10"</code></p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SiriusConverterBenchmark {
+
+    private static final String PERIOD = "2020";
+    private static final int MESSAGE_COUNT = 100;
+    private static final Set<String> PSEUDO_FIELDS = Set.of("folkeregisteridentifikator", "foedselsEllerDNummer", "identifikator", "personidentifikator");
+
+    @Param({
+      "sirius-skattemelding-utflatet-2018-v0_22",
+      "sirius-skattemelding-utflatet-2019-v1_0_1",
+      "sirius-skattemelding-utflatet-2019-v1_2",
+      "sirius-skattemelding-2020-v8_0",
+      "sirius-skattemelding-utflatet-2020-v8_0"
+    })
+    public String schemaName;
+
+    /**
+     * Number of elements generated for each array field. Controls the size of the skattemelding documents.
+     */
+    @Param({"1", "10"})
+    public int repetitions;
+
+    private List<RawdataMessage> messages;
+    private SiriusRawdataConverterConfig converterConfig;
+    private SiriusRawdataConverter converter;
+    private XmlConversionPlan skattemeldingPlan;
+    private ValueInterceptorChain noPseudo;
+    private ValueInterceptorChain pseudo;
+    private byte[] skattemelding;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        messages = SyntheticRawdataMessages.generate(schemaName, PERIOD, repetitions, MESSAGE_COUNT);
+        converterConfig = new SiriusRawdataConverterConfig();
+        converterConfig.setPeriod(PERIOD);
+        converterConfig.setDataElements(Set.of(
+          new SchemaDescriptor(SyntheticRawdataMessages.HENDELSE_SCHEMA_NAME),
+          new SchemaDescriptor(schemaName)
+        ));
+        converter = new SiriusRawdataConverter(converterConfig, new ValueInterceptorChain());
+        converter.init(messages);
+
+        skattemeldingPlan = XmlConversionPlan.compile(SiriusSchemas.getBySchemaDescriptor(new SchemaDescriptor(schemaName)));
+        skattemelding = messages.get(0).get(skattemeldingPlan.getSchemaAdapter().getRawdataItemName());
+        noPseudo = new ValueInterceptorChain();
+        pseudo = new ValueInterceptorChain();
+        pseudo.register((field, value) -> PSEUDO_FIELDS.contains(field.getName()) ? pseudonymize(value) : value);
+    }
+
+    private RawdataMessage nextMessage() {
+        next = (next + 1) % messages.size();
+        return messages.get(next);
+    }
+
+    @Benchmark
+    public boolean isConvertible() {
+        return converter.isConvertible(nextMessage());
+    }
+
+    @Benchmark
+    public Object convert() {
+        return converter.convert(nextMessage());
+    }
+
+    @Benchmark
+    public Object isConvertibleAndConvert() {
+        return converter.evaluateAndConvert(nextMessage());
+    }
+
+    @Benchmark
+    public Object convertXmlWithoutPseudo() throws Exception {
+        return skattemeldingPlan.decode(skattemelding, noPseudo);
+    }
+
+    @Benchmark
+    public Object convertXmlWithPseudo() throws Exception {
+        return skattemeldingPlan.decode(skattemelding, pseudo);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object init() {
+        SiriusRawdataConverter c = new SiriusRawdataConverter(converterConfig, new ValueInterceptorChain());
+        c.init(messages.subList(0, 1));
+        return c;
+    }
+
+    private static String pseudonymize(String value) {
+        // Cheap, deterministic stand-in for FPE encryption
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ('0' + ((bytes[i] * 31 + i) & 0x7));
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,71 @@
+package no.ssb.rawdata.converter.app.sirius.benchmark;
+
+import de.huxhorn.sulky.ulid.ULID;
+import no.ssb.rawdata.api.RawdataMessage;
+import no.ssb.rawdata.converter.app.sirius.schema.SchemaAdapter;
+import no.ssb.rawdata.converter.app.sirius.schema.SchemaDescriptor;
+import no.ssb.rawdata.converter.app.sirius.schema.SiriusSchemas;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates synthetic sirius rawdata messages, consisting of a hendelse ("entry"), a skattemelding and a
+ * data collector manifest.
+ */
+public class SyntheticRawdataMessages {
+
+    public static final String TOPIC = "sirius-benchmark";
+    public static final String HENDELSE_SCHEMA_NAME = "sirius-hendelse-v1_3";
+
+    private static final ULID ULID_GENERATOR = new ULID();
+
+    private SyntheticRawdataMessages() {}
+
+    /**
+     * @param skattemeldingSchemaName name of the skattemelding schema (see SiriusSchemas) to generate data for
+     * @param period the hendelse.gjelderPeriode of the generated messages
+     * @param repetitions number of elements to generate for each array field of skattemelding
+     * @param count number of messages to generate
+     */
+    public static List<RawdataMessage> generate(String skattemeldingSchemaName, String period, int repetitions, int count) {
+        SchemaAdapter hendelseSchema = SiriusSchemas.getBySchemaDescriptor(new SchemaDescriptor(HENDELSE_SCHEMA_NAME));
+        SchemaAdapter skattemeldingSchema = SiriusSchemas.getBySchemaDescriptor(new SchemaDescriptor(skattemeldingSchemaName));
+        byte[] skattemelding = SyntheticXml.generate(skattemeldingSchema, repetitions);
+
+        List<RawdataMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String position = String.valueOf(i + 1);
+            byte[] hendelse = SyntheticXml.generate(hendelseSchema, 1, Map.of(
+              "sekvensnummer", position,
+              "identifikator", String.format("%011d", 1010100000L + i),
+              "gjelderPeriode", period
+            ));
+
+            messages.add(RawdataMessage.builder()
+              .ulid(ULID_GENERATOR.nextValue())
+              .orderingGroup(TOPIC)
+              .sequenceNumber(i + 1)
+              .position(position)
+              .put("manifest.json", manifestJson(position))
+              .put(hendelseSchema.getRawdataItemName(), hendelse)
+              .put(skattemeldingSchema.getRawdataItemName(), skattemelding)
+              .build());
+        }
+
+        return messages;
+    }
+
+    private static byte[] manifestJson(String position) {
+        String json = "{"
+          + "\"topic\":\"" + TOPIC + "\","
+          + "\"position\":\"" + position + "\","
+          + "\"contentKey\":\"entry\","
+          + "\"contentType\":\"application/xml\""
+          + "}";
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,140 @@
+package no.ssb.rawdata.converter.app.sirius.benchmark;
+
+import no.ssb.rawdata.converter.app.sirius.schema.SchemaAdapter;
+import org.apache.avro.Schema;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates synthetic xml documents that comply with a SchemaAdapter's Avro schema. Element names and namespaces
+ * are derived from the "source" property of each field.
+ *
+ * <p>Output is deterministic, so that benchmark results are reproducible.</p>
+ */
+public class SyntheticXml {
+
+    private static final String SOURCE_ELEMENT_PREFIX = "element ";
+
+    private final int repetitions;
+    private final Map<String, String> fixedValues;
+    private final StringBuilder xml = new StringBuilder();
+    private long counter;
+
+    private SyntheticXml(int repetitions, Map<String, String> fixedValues) {
+        this.repetitions = repetitions;
+        this.fixedValues = fixedValues;
+    }
+
+    /**
+     * @param schemaAdapter the schema to generate a document for
+     * @param repetitions number of elements to generate for each array field. Controls the document size.
+     */
+    public static byte[] generate(SchemaAdapter schemaAdapter, int repetitions) {
+        return generate(schemaAdapter, repetitions, Map.of());
+    }
+
+    /**
+     * @param schemaAdapter the schema to generate a document for
+     * @param repetitions number of elements to generate for each array field. Controls the document size.
+     * @param fixedValues values to use for specific elements (keyed by element name) instead of generated values
+     */
+    public static byte[] generate(SchemaAdapter schemaAdapter, int repetitions, Map<String, String> fixedValues) {
+        SyntheticXml generator = new SyntheticXml(repetitions, fixedValues);
+        Schema schema = schemaAdapter.getSchema();
+        String namespace = namespaceOf(schema);
+
+        generator.xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        generator.xml.append('<').append(schemaAdapter.getRootElementName());
+        if (namespace != null) {
+            generator.xml.append(" xmlns=\"").append(namespace).append('"');
+        }
+        generator.xml.append('>');
+        generator.appendFields(schema, new HashSet<>());
+        generator.xml.append("</").append(schemaAdapter.getRootElementName()).append('>');
+
+        return generator.xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void appendFields(Schema recordSchema, Set<String> visitedRecords) {
+        if (! visitedRecords.add(recordSchema.getFullName())) {
+            return;
+        }
+
+        for (Schema.Field field : recordSchema.getFields()) {
+            appendField(elementNameOf(field), field.schema(), visitedRecords);
+        }
+
+        visitedRecords.remove(recordSchema.getFullName());
+    }
+
+    private void appendField(String elementName, Schema schema, Set<String> visitedRecords) {
+        switch (schema.getType()) {
+            case UNION:
+                for (Schema type : schema.getTypes()) {
+                    if (type.getType() != Schema.Type.NULL) {
+                        appendField(elementName, type, visitedRecords);
+                        return;
+                    }
+                }
+                return;
+            case ARRAY:
+                for (int i = 0; i < repetitions; i++) {
+                    appendField(elementName, schema.getElementType(), visitedRecords);
+                }
+                return;
+            case MAP:
+                return;
+            case RECORD:
+                xml.append('<').append(elementName).append('>');
+                appendFields(schema, visitedRecords);
+                xml.append("</").append(elementName).append('>');
+                return;
+            default:
+                xml.append('<').append(elementName).append('>')
+                  .append(fixedValues.getOrDefault(elementName, valueOf(schema)))
+                  .append("</").append(elementName).append('>');
+        }
+    }
+
+    private String valueOf(Schema schema) {
+        long n = ++counter;
+        switch (schema.getType()) {
+            case BOOLEAN:
+                return String.valueOf(n % 2 == 0);
+            case INT:
+            case LONG:
+                return String.valueOf(n);
+            case FLOAT:
+            case DOUBLE:
+                return n + ".5";
+            case ENUM:
+                return schema.getEnumSymbols().get(0);
+            default:
+                return "verdi" + n;
+        }
+    }
+
+    private static String elementNameOf(Schema.Field field) {
+        String source = field.getProp("source");
+        if (source != null && source.startsWith(SOURCE_ELEMENT_PREFIX)) {
+            return source.substring(source.lastIndexOf(':') + 1);
+        }
+
+        return field.name();
+    }
+
+    private static String namespaceOf(Schema recordSchema) {
+        for (Schema.Field field : recordSchema.getFields()) {
+            String source = field.getProp("source");
+            if (source != null && source.startsWith(SOURCE_ELEMENT_PREFIX) && source.lastIndexOf(':') > SOURCE_ELEMENT_PREFIX.length()) {
+                return source.substring(SOURCE_ELEMENT_PREFIX.length(), source.lastIndexOf(':'));
+            }
+        }
+
+        return null;
+    }
+
+}
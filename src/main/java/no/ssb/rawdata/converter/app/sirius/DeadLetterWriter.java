@@ -0,0 +1,210 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import no.ssb.rawdata.converter.app.sirius.SiriusRawdataConverter.SiriusRawdataConverterException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes rawdata items that failed to convert, or that were left out of (or cut short in) the conversion, to local,
+ * rolling dead-letter files.
+ *
+ * <p>Each dead letter is a line of json. Dead letters are buffered and appended to the current file in batches,
+ * either when the batch is full or periodically. Files are never rewritten: Once the current file exceeds the max
+ * file size, a new file is started.</p>
+ */
+@Slf4j
+public class DeadLetterWriter implements Closeable {
+
+    static final String FILE_PREFIX = "sirius-dead-letter-";
+    static final String FILE_SUFFIX = ".jsonl";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS").withZone(ZoneOffset.UTC);
+
+    private final Path directory;
+    private final long maxFileSizeBytes;
+    private final int batchSize;
+    private final List<byte[]> pending = new ArrayList<>();
+    private final ScheduledExecutorService flushScheduler;
+    private OutputStream out;
+    private Path currentFile;
+    private long currentFileSize;
+    private int fileSeq;
+
+    /**
+     * @param directory the directory to write dead-letter files to. Created if it does not exist.
+     * @param maxFileSizeBytes a new file is started once the current file exceeds this size
+     * @param batchSize max number of dead letters to buffer before they are written
+     * @param flushIntervalMillis buffered dead letters are written at least this often. Use 0 to only write full batches.
+     */
+    public DeadLetterWriter(Path directory, long maxFileSizeBytes, int batchSize, long flushIntervalMillis) {
+        this.directory = directory;
+        this.maxFileSizeBytes = maxFileSizeBytes;
+        this.batchSize = Math.max(1, batchSize);
+        try {
+            Files.createDirectories(directory);
+        }
+        catch (IOException e) {
+            throw new DeadLetterWriterException("Unable to create dead-letter directory " + directory, e);
+        }
+
+        if (flushIntervalMillis > 0) {
+            this.flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "sirius-dead-letter-flush");
+                t.setDaemon(true);
+                return t;
+            });
+            flushScheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        else {
+            this.flushScheduler = null;
+        }
+    }
+
+    public void write(DeadLetter deadLetter) {
+        byte[] line;
+        try {
+            line = (OBJECT_MAPPER.writeValueAsString(deadLetter) + "\n").getBytes(StandardCharsets.UTF_8);
+        }
+        catch (JsonProcessingException e) {
+            throw new DeadLetterWriterException("Unable to serialize dead letter for rawdata item at position " + deadLetter.getPosition(), e);
+        }
+
+        synchronized (this) {
+            pending.add(line);
+            if (pending.size() >= batchSize) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Append all buffered dead letters to the current dead-letter file
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        pending.forEach(line -> batch.write(line, 0, line.length));
+        try {
+            if (out == null || currentFileSize >= maxFileSizeBytes) {
+                roll();
+            }
+            batch.writeTo(out);
+            out.flush();
+            currentFileSize += batch.size();
+            pending.clear();
+        }
+        catch (IOException e) {
+            throw new DeadLetterWriterException("Unable to write dead letters to " + currentFile, e);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        }
+        catch (RuntimeException e) {
+            log.error("Error flushing dead letters", e);
+        }
+    }
+
+    private void roll() throws IOException {
+        if (out != null) {
+            out.close();
+        }
+        currentFile = directory.resolve(FILE_PREFIX + FILE_TIMESTAMP.format(Instant.now()) + "-" + (fileSeq++) + FILE_SUFFIX);
+        out = Files.newOutputStream(currentFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        currentFileSize = Files.size(currentFile);
+        log.info("Writing dead letters to {}", currentFile);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (flushScheduler != null) {
+            flushScheduler.shutdown();
+        }
+        flush();
+        if (out != null) {
+            try {
+                out.close();
+            }
+            catch (IOException e) {
+                throw new DeadLetterWriterException("Unable to close dead-letter file " + currentFile, e);
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * Why a rawdata item was not (fully) converted
+     */
+    public enum Reason {
+
+        /**
+         * The rawdata item failed to convert
+         */
+        FAILED,
+
+        /**
+         * The rawdata item exceeded the max item size, and was not converted
+         */
+        OVERSIZED,
+
+        /**
+         * The max number of records per item was reached, and the rest of the rawdata item was not converted
+         */
+        TRUNCATED,
+
+        /**
+         * The rawdata item is shared by several data elements (see schema routing), but did not match any of them
+         */
+        UNROUTED
+    }
+
+    /**
+     * A rawdata item that was not (fully) converted. The position, id (ulid) and rawdata item name identify the item
+     * in the rawdata topic. The rawdata item itself is deliberately not included, since it is not pseudonymized.
+     */
+    @Value
+    @Builder
+    public static class DeadLetter {
+        private final String timestamp;
+        private final Reason reason;
+        private final String position;
+        private final String id;
+        private final String rawdataItemName;
+        private final String schemaName;
+        private final String error;
+        private final String cause;
+    }
+
+    public static class DeadLetterWriterException extends SiriusRawdataConverterException {
+        public DeadLetterWriterException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+}
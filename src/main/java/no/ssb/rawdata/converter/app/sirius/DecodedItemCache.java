@@ -0,0 +1,80 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import lombok.Value;
+import no.ssb.rawdata.api.RawdataMessage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Holds values (e.g. records) decoded from rawdata items while evaluating whether a message is convertible, so that
+ * the subsequent conversion of the same message can reuse them instead of parsing the item again.
+ *
+ * <p>Entries are tied to the message position and the identity of the rawdata item payload. The cache is bounded,
+ * and entries are evicted as soon as they are consumed. If a message is filtered but never converted, its entry is
+ * eventually pushed out by subsequent messages.</p>
+ */
+class DecodedItemCache<T> {
+
+    static final int DEFAULT_CAPACITY = 16;
+
+    private final Map<Key, Entry<T>> entries;
+
+    DecodedItemCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    DecodedItemCache(int capacity) {
+        this.entries = new LinkedHashMap<>(capacity, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry<T>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Store the value decoded from a rawdata item
+     */
+    void put(RawdataMessage rawdataMessage, String rawdataItemName, T value) {
+        Entry<T> entry = new Entry<>(rawdataMessage.get(rawdataItemName), value);
+        synchronized (entries) {
+            entries.put(new Key(rawdataMessage.position(), rawdataItemName), entry);
+        }
+    }
+
+    /**
+     * Retrieve and evict the value previously decoded from a rawdata item. Only values decoded from the exact same
+     * payload are returned.
+     */
+    Optional<T> take(RawdataMessage rawdataMessage, String rawdataItemName) {
+        Entry<T> entry;
+        synchronized (entries) {
+            entry = entries.remove(new Key(rawdataMessage.position(), rawdataItemName));
+        }
+
+        return (entry != null && entry.getData() == rawdataMessage.get(rawdataItemName))
+          ? Optional.of(entry.getValue())
+          : Optional.empty();
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Value
+    private static class Key {
+        private final String position;
+        private final String rawdataItemName;
+    }
+
+    @Value
+    private static class Entry<T> {
+        private final byte[] data;
+        private final T value;
+    }
+
+}
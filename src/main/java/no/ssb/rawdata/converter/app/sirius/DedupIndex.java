@@ -0,0 +1,242 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import com.google.common.hash.Hashing;
+import de.huxhorn.sulky.ulid.ULID;
+import lombok.extern.slf4j.Slf4j;
+import no.ssb.rawdata.converter.app.sirius.SiriusRawdataConverter.SiriusRawdataConverterException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Index of the highest sekvensnummer seen per taxpayer (identifikator) and period, used to detect stale hendelser.
+ *
+ * <p>Keys are 64 bit fingerprints of identifikator and period, held in a primitive open addressing hash table
+ * together with the sekvensnummer. This keeps the footprint at roughly 32 bytes per taxpayer and period, without any
+ * per-entry objects. The index can be checkpointed to, and restored from, a local file.</p>
+ *
+ * <p>The index also tracks the position (ulid) of the latest rawdata message that was registered. A checkpoint holds
+ * this position, so that a restored index can tell messages that may be redelivered after a restart (at or before
+ * the checkpointed position) from messages that are new.</p>
+ */
+@Slf4j
+public class DedupIndex {
+
+    private static final int CHECKPOINT_MAGIC = 0x53445832; // "SDX2"
+    private static final int MIN_CAPACITY = 1024;
+    private static final long EMPTY = 0L;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private boolean hasEmptyKey;
+    private long emptyKeyValue;
+    private ULID.Value position;
+    private ULID.Value restoredPosition;
+
+    public DedupIndex() {
+        this(MIN_CAPACITY);
+    }
+
+    public DedupIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedSize * 2) - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new long[capacity];
+    }
+
+    /**
+     * @return a 64 bit fingerprint of an identifikator and period
+     */
+    public static long keyOf(String identifikator, String period) {
+        return Hashing.farmHashFingerprint64().newHasher()
+          .putString(identifikator, StandardCharsets.UTF_8)
+          .putByte((byte) 0)
+          .putString(period, StandardCharsets.UTF_8)
+          .hash().asLong();
+    }
+
+    /**
+     * Register a sekvensnummer for a key.
+     *
+     * @return true if the sekvensnummer is higher than any previously registered for the key, false if it is stale
+     */
+    public synchronized boolean offer(long key, long sekvensnummer) {
+        if (key == EMPTY) {
+            if (hasEmptyKey && emptyKeyValue >= sekvensnummer) {
+                return false;
+            }
+            hasEmptyKey = true;
+            emptyKeyValue = sekvensnummer;
+            return true;
+        }
+
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                if (values[i] >= sekvensnummer) {
+                    return false;
+                }
+                values[i] = sekvensnummer;
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = key;
+        values[i] = sekvensnummer;
+        if (++size > keys.length * 3 / 4) {
+            resize(keys.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Register a sekvensnummer for a key, on behalf of the rawdata message at the given position
+     *
+     * @return true if the sekvensnummer is higher than any previously registered for the key, false if it is stale
+     */
+    public synchronized boolean offer(long key, long sekvensnummer, ULID.Value messagePosition) {
+        if (position == null || messagePosition.compareTo(position) > 0) {
+            position = messagePosition;
+        }
+        return offer(key, sekvensnummer);
+    }
+
+    /**
+     * @return the position of the latest rawdata message registered, or null if none
+     */
+    public synchronized ULID.Value getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the position of the checkpoint that the index was restored from, or null if none. Rawdata messages at
+     * or before this position may be redelivered after a restart.
+     */
+    public synchronized ULID.Value getRestoredPosition() {
+        return restoredPosition;
+    }
+
+    /**
+     * @return the highest sekvensnummer registered for the key, or null if none
+     */
+    public synchronized Long get(long key) {
+        if (key == EMPTY) {
+            return hasEmptyKey ? emptyKeyValue : null;
+        }
+
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    public synchronized int size() {
+        return size + (hasEmptyKey ? 1 : 0);
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[capacity];
+        values = new long[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != EMPTY) {
+                int i = mix(oldKeys[j]) & mask;
+                while (keys[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Write the index to a file. The file is replaced atomically, so that a crash never leaves a partial checkpoint.
+     */
+    public void checkpoint(Path file) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                synchronized (this) {
+                    out.writeInt(CHECKPOINT_MAGIC);
+                    out.writeBoolean(position != null);
+                    if (position != null) {
+                        out.writeLong(position.getMostSignificantBits());
+                        out.writeLong(position.getLeastSignificantBits());
+                    }
+                    out.writeInt(size());
+                    if (hasEmptyKey) {
+                        out.writeLong(EMPTY);
+                        out.writeLong(emptyKeyValue);
+                    }
+                    for (int i = 0; i < keys.length; i++) {
+                        if (keys[i] != EMPTY) {
+                            out.writeLong(keys[i]);
+                            out.writeLong(values[i]);
+                        }
+                    }
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException e) {
+            throw new DedupIndexException("Unable to checkpoint dedup index to " + file, e);
+        }
+    }
+
+    /**
+     * @return the index restored from a checkpoint file, or an empty index if the file does not exist
+     */
+    public static DedupIndex restore(Path file) {
+        if (! Files.isRegularFile(file)) {
+            return new DedupIndex();
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int magic = in.readInt();
+            if (magic != CHECKPOINT_MAGIC) {
+                throw new DedupIndexException("Not a dedup index checkpoint: " + file, null);
+            }
+            ULID.Value checkpointPosition = in.readBoolean() ? new ULID.Value(in.readLong(), in.readLong()) : null;
+            int count = in.readInt();
+            DedupIndex index = new DedupIndex(count);
+            for (int i = 0; i < count; i++) {
+                index.offer(in.readLong(), in.readLong());
+            }
+            index.position = checkpointPosition;
+            index.restoredPosition = checkpointPosition;
+            log.info("Restored dedup index with {} entries, up to position {}, from {}", count, checkpointPosition, file);
+            return index;
+        }
+        catch (IOException e) {
+            throw new DedupIndexException("Unable to restore dedup index from " + file, e);
+        }
+    }
+
+    public static class DedupIndexException extends SiriusRawdataConverterException {
+        public DedupIndexException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+}
@@ -1,55 +1,160 @@
 package no.ssb.rawdata.converter.app.sirius;
 
-import lombok.RequiredArgsConstructor;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import no.ssb.dlp.pseudo.core.FieldPseudonymizer;
+import no.ssb.dlp.pseudo.core.PseudoFuncRule;
+import no.ssb.rawdata.converter.app.sirius.schema.SchemaAdapter;
 import no.ssb.rawdata.converter.core.convert.RawdataConverter;
 import no.ssb.rawdata.converter.core.convert.RawdataConverterFactory;
+import no.ssb.rawdata.converter.core.convert.ValueInterceptor;
 import no.ssb.rawdata.converter.core.convert.ValueInterceptorChain;
 import no.ssb.rawdata.converter.core.exception.RawdataConverterException;
 import no.ssb.rawdata.converter.core.job.ConverterJobConfig;
 import no.ssb.rawdata.converter.core.pseudo.FieldPseudonymizerFactory;
 import no.ssb.rawdata.converter.util.Json;
 
+import javax.annotation.PreDestroy;
 import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Singleton
-@RequiredArgsConstructor
 @Slf4j
 public class DefaultRawdataConverterFactory implements RawdataConverterFactory {
     private final FieldPseudonymizerFactory pseudonymizerFactory;
     private final SiriusRawdataConverterConfig defaultRawdataConverterConfig;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Converters created by this factory, so that they can be closed on shutdown. Converters of jobs that are no
+     * longer referenced are dropped along the way.
+     */
+    private final Set<SiriusRawdataConverter> converters = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    public DefaultRawdataConverterFactory(FieldPseudonymizerFactory pseudonymizerFactory,
+                                          SiriusRawdataConverterConfig defaultRawdataConverterConfig,
+                                          @Nullable MeterRegistry meterRegistry) {
+        this.pseudonymizerFactory = pseudonymizerFactory;
+        this.defaultRawdataConverterConfig = defaultRawdataConverterConfig;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @return metrics tagged with the name of the job
+     */
+    private SiriusConverterMetrics metricsOf(ConverterJobConfig jobConfig) {
+        return (meterRegistry == null) ? SiriusConverterMetrics.noop() : new SiriusConverterMetrics(meterRegistry, jobConfig.getJobName());
+    }
 
     @Override
     public RawdataConverter newRawdataConverter(ConverterJobConfig jobConfig) {
-        SiriusRawdataConverterConfig converterConfig = defaultRawdataConverterConfig;
+        return newRawdataConverter(jobConfig, converterConfigOf(jobConfig));
+    }
+
+    public RawdataConverter newRawdataConverter(ConverterJobConfig jobConfig, SiriusRawdataConverterConfig converterConfig) {
+        SiriusRawdataConverterConfig config = nonNull(converterConfig);
+        SiriusConverterMetrics metrics = metricsOf(jobConfig);
+        SiriusRawdataConverter converter = newSiriusRawdataConverter(jobConfig, config, metrics);
+        converters.add(converter);
+        return converter;
+    }
+
+    /**
+     * Close all converters created by this factory (see SiriusRawdataConverter#close)
+     */
+    @PreDestroy
+    public void close() {
+        List<SiriusRawdataConverter> toClose;
+        synchronized (converters) {
+            toClose = new ArrayList<>(converters);
+            converters.clear();
+        }
 
-        if (! jobConfig.getAppConfig().isEmpty()) {
+        toClose.forEach(converter -> {
             try {
-                converterConfig = Json.toObject(SiriusRawdataConverterConfig.class, jobConfig.appConfigJson());
+                converter.close();
             }
-            catch (Exception e) {
-                throw new RawdataConverterException("Invalid SiriusRawdataConverterConfig params: " + jobConfig.appConfigJson(), e);
+            catch (RuntimeException e) {
+                log.error("Error closing converter", e);
             }
+        });
+    }
+
+    private SiriusRawdataConverterConfig converterConfigOf(ConverterJobConfig jobConfig) {
+        if (jobConfig.getAppConfig() == null || jobConfig.getAppConfig().isEmpty()) {
+            return nonNull(defaultRawdataConverterConfig);
+        }
+
+        try {
+            return Json.toObject(SiriusRawdataConverterConfig.class, jobConfig.appConfigJson());
+        }
+        catch (Exception e) {
+            throw new RawdataConverterException("Invalid SiriusRawdataConverterConfig params: " + jobConfig.appConfigJson(), e);
         }
+    }
 
-        return newRawdataConverter(jobConfig, converterConfig);
+    private SiriusRawdataConverterConfig nonNull(SiriusRawdataConverterConfig converterConfig) {
+        if (converterConfig != null) {
+            return converterConfig;
+        }
+        return (defaultRawdataConverterConfig == null) ? new SiriusRawdataConverterConfig() : defaultRawdataConverterConfig;
     }
 
-    public RawdataConverter newRawdataConverter(ConverterJobConfig jobConfig, SiriusRawdataConverterConfig converterConfig) {
+    private SiriusRawdataConverter newSiriusRawdataConverter(ConverterJobConfig jobConfig, SiriusRawdataConverterConfig converterConfig,
+                                                             SiriusConverterMetrics metrics) {
+        if (jobConfig.getPseudoRules() == null || jobConfig.getPseudoRules().isEmpty()) {
+            return new SiriusRawdataConverter(converterConfig, new ValueInterceptorChain(), metrics);
+        }
+
+        ValueInterceptor pseudoInterceptor = pseudoInterceptor(jobConfig, converterConfig, metrics);
         ValueInterceptorChain valueInterceptorChain = new ValueInterceptorChain();
+        valueInterceptorChain.register(pseudoInterceptor);
 
-        if (jobConfig.getPseudoRules() != null && ! jobConfig.getPseudoRules().isEmpty()) {
-            FieldPseudonymizer fieldPseudonymizer = pseudonymizerFactory.newFieldPseudonymizer(jobConfig);
-            valueInterceptorChain.register(fieldPseudonymizer::pseudonymize);
-        }
+        // Resolve pseudo rules against each data element's schema up front, and only intercept values of fields that
+        // can possibly match
+        List<String> pseudoPatterns = jobConfig.getPseudoRules().stream()
+          .map(PseudoFuncRule::getPattern)
+          .collect(Collectors.toList());
+        Function<SchemaAdapter, ValueInterceptorChain> dataElementInterceptors = schemaAdapter -> {
+            ValueInterceptorChain chain = new ValueInterceptorChain();
+            Set<String> pseudoFieldNames = PseudoFieldResolver.matchingFieldNames(schemaAdapter, pseudoPatterns);
+            log.info("Fields that are subject to pseudonymization in {}: {}", schemaAdapter.getSchemaName(), pseudoFieldNames);
+            if (! pseudoFieldNames.isEmpty()) {
+                chain.register((field, value) -> pseudoFieldNames.contains(field.getName())
+                  ? pseudoInterceptor.intercept(field, value)
+                  : value
+                );
+            }
+            return chain;
+        };
 
-        // Make sure the converterConfig is not null
-        if (converterConfig == null) {
-            converterConfig = (defaultRawdataConverterConfig == null) ? new SiriusRawdataConverterConfig() : defaultRawdataConverterConfig;
-        }
+        return new SiriusRawdataConverter(converterConfig, valueInterceptorChain, dataElementInterceptors, metrics);
+    }
 
-        return new SiriusRawdataConverter(converterConfig, valueInterceptorChain);
+    private ValueInterceptor pseudoInterceptor(ConverterJobConfig jobConfig, SiriusRawdataConverterConfig converterConfig, SiriusConverterMetrics metrics) {
+        FieldPseudonymizer fieldPseudonymizer = pseudonymizerFactory.newFieldPseudonymizer(jobConfig);
+        Timer pseudonymizationTimer = metrics.getPseudonymizationTimer();
+
+        if (converterConfig.getPseudoCacheMaxSize() > 0) {
+            PseudoCache pseudoCache = new PseudoCache(converterConfig.getPseudoCacheMaxSize(), converterConfig.getPseudoCacheTtlSeconds());
+            metrics.monitor(pseudoCache);
+            return (field, value) ->
+              pseudoCache.get(field.getPath(), value, () ->
+                pseudonymizationTimer.record(() -> fieldPseudonymizer.pseudonymize(field, value))
+              );
+        }
+        else {
+            return (field, value) ->
+              pseudonymizationTimer.record(() -> fieldPseudonymizer.pseudonymize(field, value));
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.Value;
+import no.ssb.rawdata.converter.app.sirius.SiriusRawdataConverter.SiriusRawdataConverterException;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of pseudonymized values. Pseudonymization (e.g. FPE encryption) is expensive, and the same values
+ * (e.g. fødselsnummer) tend to occur many times across hendelse and skattemelding records.
+ *
+ * <p>Values are keyed by field path and value, since the field path determines which pseudo rule applies.</p>
+ */
+public class PseudoCache {
+
+    private final Cache<Key, String> cache;
+
+    public PseudoCache(long maxSize, long ttlSeconds) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+          .maximumSize(maxSize)
+          .recordStats();
+        if (ttlSeconds > 0) {
+            builder.expireAfterWrite(ttlSeconds, TimeUnit.SECONDS);
+        }
+        this.cache = builder.build();
+    }
+
+    /**
+     * @return the cached pseudonymized value, or else the result of the supplied pseudonymize function
+     */
+    public String get(String fieldPath, String value, Supplier<String> pseudonymize) {
+        if (value == null) {
+            return pseudonymize.get();
+        }
+
+        try {
+            return cache.get(new Key(fieldPath, value), pseudonymize::get);
+        }
+        catch (ExecutionException | UncheckedExecutionException e) {
+            throw (e.getCause() instanceof RuntimeException)
+              ? (RuntimeException) e.getCause()
+              : new SiriusRawdataConverterException("Error pseudonymizing value of " + fieldPath, e.getCause());
+        }
+    }
+
+    Cache<Key, String> getCache() {
+        return cache;
+    }
+
+    @Value
+    static class Key {
+        private final String fieldPath;
+        private final String value;
+    }
+
+}
@@ -0,0 +1,83 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import no.ssb.rawdata.converter.app.sirius.schema.SchemaAdapter;
+import org.apache.avro.Schema;
+
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves pseudo rule patterns (globs such as <code>**&#47;{folkeregisteridentifikator,foedselsEllerDNummer}</code>)
+ * against the fields of a SchemaAdapter's Avro schema, up front.
+ *
+ * <p>The result is the set of field names that can possibly be matched by any of the rules. Values of all other
+ * fields can skip pseudo rule evaluation entirely. Each field path is matched both with and without the root
+ * element prefix, so the resolved set is a superset of what the pseudonymizer itself will match.</p>
+ */
+public class PseudoFieldResolver {
+
+    private PseudoFieldResolver() {}
+
+    /**
+     * @param schemaAdapter the schema to resolve rule patterns against
+     * @param patterns pseudo rule glob patterns
+     * @return names of fields that might be matched by any of the patterns
+     */
+    public static Set<String> matchingFieldNames(SchemaAdapter schemaAdapter, Collection<String> patterns) {
+        List<PathMatcher> matchers = patterns.stream()
+          .map(pattern -> FileSystems.getDefault().getPathMatcher("glob:" + pattern))
+          .collect(Collectors.toList());
+
+        Set<String> fieldNames = new HashSet<>();
+        collectMatchingFieldNames(schemaAdapter.getSchema(), "/" + schemaAdapter.getRootElementName(), "", matchers, new HashSet<>(), fieldNames);
+        return fieldNames;
+    }
+
+    private static void collectMatchingFieldNames(Schema schema, String rootPath, String parentPath, List<PathMatcher> matchers,
+                                                  Set<String> visitedRecords, Set<String> fieldNames) {
+        switch (schema.getType()) {
+            case UNION:
+                schema.getTypes().forEach(type -> collectMatchingFieldNames(type, rootPath, parentPath, matchers, visitedRecords, fieldNames));
+                return;
+            case ARRAY:
+                collectMatchingFieldNames(schema.getElementType(), rootPath, parentPath, matchers, visitedRecords, fieldNames);
+                return;
+            case MAP:
+                collectMatchingFieldNames(schema.getValueType(), rootPath, parentPath, matchers, visitedRecords, fieldNames);
+                return;
+            case RECORD:
+                // Guard against recursive schemas
+                if (! visitedRecords.add(schema.getFullName())) {
+                    return;
+                }
+                for (Schema.Field field : schema.getFields()) {
+                    String path = parentPath + "/" + field.name();
+                    if (matchesAny(matchers, rootPath + path, path, path.substring(1))) {
+                        fieldNames.add(field.name());
+                    }
+                    collectMatchingFieldNames(field.schema(), rootPath, path, matchers, visitedRecords, fieldNames);
+                }
+                visitedRecords.remove(schema.getFullName());
+                return;
+            default:
+        }
+    }
+
+    private static boolean matchesAny(List<PathMatcher> matchers, String... paths) {
+        for (PathMatcher matcher : matchers) {
+            for (String path : paths) {
+                if (matcher.matches(Paths.get(path))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+}
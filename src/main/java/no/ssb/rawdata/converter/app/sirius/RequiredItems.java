@@ -0,0 +1,106 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import no.ssb.rawdata.api.RawdataMessage;
+import no.ssb.rawdata.converter.app.sirius.SiriusRawdataConverter.SiriusRawdataConverterException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The rawdata items that a message must contain in order to be converted, compiled once when the converter is
+ * constructed.
+ *
+ * <p>Checking a message does not allocate: Missing items are reported as a bitmask, where bit <i>n</i> denotes the
+ * <i>n</i>-th required item. Misses are aggregated per item, so that they can be reported periodically instead of
+ * for every message.</p>
+ */
+class RequiredItems {
+
+    static final int MAX_ITEMS = Long.SIZE;
+
+    private final String[] itemNames;
+    private final AtomicLongArray missCounts;
+    private final AtomicLong nextReport = new AtomicLong(Long.MIN_VALUE);
+    private final long reportIntervalNanos;
+
+    RequiredItems(Collection<String> itemNames, Duration reportInterval) {
+        if (itemNames.size() > MAX_ITEMS) {
+            throw new SiriusRawdataConverterException("At most " + MAX_ITEMS + " required rawdata items are supported, but got " + itemNames.size());
+        }
+        this.itemNames = itemNames.stream().sorted().toArray(String[]::new);
+        this.missCounts = new AtomicLongArray(this.itemNames.length);
+        this.reportIntervalNanos = reportInterval.toNanos();
+    }
+
+    /**
+     * @return a bitmask of the required items that are not present in the message, or 0 if all are present
+     */
+    long missing(RawdataMessage rawdataMessage) {
+        Collection<String> keys = rawdataMessage.keys();
+        long missing = 0;
+        for (int i = 0; i < itemNames.length; i++) {
+            if (! keys.contains(itemNames[i])) {
+                missing |= 1L << i;
+            }
+        }
+
+        return missing;
+    }
+
+    /**
+     * Count the items of a miss
+     *
+     * @return true if it is time to report the aggregated misses (see {@link #drainMissCounts()})
+     */
+    boolean recordMiss(long missing) {
+        for (int i = 0; i < itemNames.length; i++) {
+            if ((missing & (1L << i)) != 0) {
+                missCounts.incrementAndGet(i);
+            }
+        }
+
+        long now = System.nanoTime();
+        long next = nextReport.get();
+        return (next == Long.MIN_VALUE || now - next >= 0) && nextReport.compareAndSet(next, now + reportIntervalNanos);
+    }
+
+    /**
+     * @return the number of misses per required item since the previous invocation, omitting items with no misses
+     */
+    Map<String, Long> drainMissCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < itemNames.length; i++) {
+            long count = missCounts.getAndSet(i, 0);
+            if (count > 0) {
+                counts.put(itemNames[i], count);
+            }
+        }
+
+        return counts;
+    }
+
+    /**
+     * @return the names of the items denoted by a bitmask
+     */
+    List<String> itemNamesOf(long missing) {
+        List<String> names = new ArrayList<>(Long.bitCount(missing));
+        for (int i = 0; i < itemNames.length; i++) {
+            if ((missing & (1L << i)) != 0) {
+                names.add(itemNames[i]);
+            }
+        }
+
+        return names;
+    }
+
+    int size() {
+        return itemNames.length;
+    }
+
+}
@@ -0,0 +1,160 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import lombok.extern.slf4j.Slf4j;
+import no.ssb.rawdata.converter.app.sirius.SiriusRawdataConverter.SiriusRawdataConverterException;
+import no.ssb.rawdata.converter.app.sirius.XmlConversionPlan.FieldRef;
+import org.apache.avro.generic.GenericRecord;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a dry conversion of sample rawdata messages, per data element (see SiriusRawdataConverter#init).
+ *
+ * <p>For each data element, this keeps track of how many samples contained the data element's rawdata item, how many
+ * of these converted, the time spent converting, and which fields (see XmlConversionPlan#getFieldsByPath) were set in
+ * at least one converted record. A data element is considered incompatible with the data if none of the samples that
+ * contain its rawdata item could be converted to any records.</p>
+ */
+@Slf4j
+public class SampleValidation {
+
+    private final Map<XmlConversionPlan, Stats> stats = new LinkedHashMap<>();
+
+    /**
+     * @param plans conversion plans of all data elements, in conversion order
+     */
+    public SampleValidation(Collection<XmlConversionPlan> plans) {
+        plans.forEach(plan -> stats.put(plan, new Stats()));
+    }
+
+    /**
+     * Record a converted sample. The fields covered by the sample are determined by the calling task, and only merged
+     * under the lock, so that concurrent tasks do not wait for each other.
+     */
+    public void converted(XmlConversionPlan plan, List<GenericRecord> records, long nanos) {
+        Stats s = statsOf(plan);
+        Set<String> covered = coveredFieldsOf(plan, records);
+        synchronized (this) {
+            s.samples++;
+            s.records += records.size();
+            s.nanos += nanos;
+            s.maxNanos = Math.max(s.maxNanos, nanos);
+            if (! records.isEmpty()) {
+                s.converted++;
+            }
+            s.coveredFields.addAll(covered);
+        }
+    }
+
+    private static Set<String> coveredFieldsOf(XmlConversionPlan plan, List<GenericRecord> records) {
+        Set<String> covered = new HashSet<>();
+        for (FieldRef field : plan.getFieldsByPath().values()) {
+            if (records.stream().anyMatch(record -> field.valueOf(record) != null)) {
+                covered.add(field.getPath());
+            }
+        }
+        return covered;
+    }
+
+    public synchronized void failed(XmlConversionPlan plan, Exception e, long nanos) {
+        Stats s = statsOf(plan);
+        s.samples++;
+        s.nanos += nanos;
+        s.maxNanos = Math.max(s.maxNanos, nanos);
+        if (s.firstError == null) {
+            s.firstError = String.valueOf(e);
+        }
+    }
+
+    /**
+     * The stats map is never modified after construction, so it is safe to look up stats without holding the lock
+     */
+    private Stats statsOf(XmlConversionPlan plan) {
+        Stats s = stats.get(plan);
+        if (s == null) {
+            throw new IllegalArgumentException("Unknown conversion plan for " + plan.getSchemaAdapter().getSchemaName());
+        }
+        return s;
+    }
+
+    /**
+     * @return names of the schemas that could not convert any of the samples that contain their rawdata item
+     */
+    public synchronized List<String> incompatibleSchemaNames() {
+        List<String> schemaNames = new ArrayList<>();
+        stats.forEach((plan, s) -> {
+            if (s.samples > 0 && s.converted == 0) {
+                schemaNames.add(plan.getSchemaAdapter().getSchemaName());
+            }
+        });
+        return schemaNames;
+    }
+
+    /**
+     * @return the fraction of the data element's fields that were set in at least one converted sample record
+     */
+    public synchronized double fieldCoverage(XmlConversionPlan plan) {
+        int total = plan.getFieldsByPath().size();
+        return (total == 0) ? 0 : (double) statsOf(plan).coveredFields.size() / total;
+    }
+
+    /**
+     * @return the fields of the data element that were not set in any converted sample record
+     */
+    public synchronized Set<String> uncoveredFields(XmlConversionPlan plan) {
+        Set<String> uncovered = new TreeSet<>(plan.getFieldsByPath().keySet());
+        uncovered.removeAll(statsOf(plan).coveredFields);
+        return uncovered;
+    }
+
+    /**
+     * Log a summary line per data element
+     */
+    public synchronized void log() {
+        stats.forEach((plan, s) -> {
+            String schemaName = plan.getSchemaAdapter().getSchemaName();
+            if (s.samples == 0) {
+                log.warn("Sample validation of {}: No samples contain rawdata item '{}'. Consider increasing converter-settings.rawdata-samples",
+                  schemaName, plan.getSchemaAdapter().getRawdataItemName());
+                return;
+            }
+
+            log.info("Sample validation of {}: samples={}, converted={}, records={}, field coverage={}/{} ({}%), avg={}ms, max={}ms{}",
+              schemaName, s.samples, s.converted, s.records, s.coveredFields.size(), plan.getFieldsByPath().size(),
+              Math.round(fieldCoverage(plan) * 100), millis(s.nanos / s.samples), millis(s.maxNanos),
+              (s.firstError == null) ? "" : ", first error: " + s.firstError);
+            if (log.isDebugEnabled()) {
+                log.debug("Fields of {} that are not set in any sample: {}", schemaName, uncoveredFields(plan));
+            }
+        });
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / (double) TimeUnit.MILLISECONDS.toNanos(1) * 10) / 10.0;
+    }
+
+    private static class Stats {
+        private int samples;
+        private int converted;
+        private long records;
+        private long nanos;
+        private long maxNanos;
+        private String firstError;
+        private final Set<String> coveredFields = new TreeSet<>();
+    }
+
+    public static class SampleValidationException extends SiriusRawdataConverterException {
+        public SampleValidationException(String msg) {
+            super(msg);
+        }
+    }
+
+}
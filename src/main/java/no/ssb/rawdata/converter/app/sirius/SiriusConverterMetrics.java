@@ -0,0 +1,250 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import lombok.Getter;
+import no.ssb.rawdata.converter.app.sirius.schema.SchemaAdapter;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Micrometer meters reported by the sirius converter.
+ *
+ * <p>All meters are resolved up front, so that recording a measurement on the hot path is a plain method call on
+ * an already registered meter. All meters are tagged with the name of the converter job, so that concurrent jobs
+ * that share the same registry report separately.</p>
+ */
+public class SiriusConverterMetrics {
+
+    static final String PREFIX = "sirius.converter.";
+    static final String TAG_JOB = "converter.job";
+    static final String DEFAULT_JOB_NAME = "default";
+
+    public enum SkipReason {
+        MISSING_ITEMS("missing-items"),
+        NO_HENDELSE("no-hendelse"),
+        NO_PERIOD("no-period"),
+        WRONG_PERIOD("wrong-period"),
+        STALE("stale");
+
+        private final String tag;
+
+        SkipReason(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final Tags jobTags;
+
+    /**
+     * Time spent evaluating whether a rawdata message is convertible
+     */
+    @Getter
+    private final Timer isConvertibleTimer;
+
+    /**
+     * Time spent pseudonymizing values
+     */
+    @Getter
+    private final Timer pseudonymizationTimer;
+
+    private final Counter decodedItemCacheHits;
+    private final Counter decodedItemCacheMisses;
+    private final Map<SkipReason, Counter> skipCounters = new EnumMap<>(SkipReason.class);
+    private final Map<SkipReason, AtomicLong> skipCounts = new EnumMap<>(SkipReason.class);
+    private final Map<String, Counter> unroutedCounters = new ConcurrentHashMap<>();
+    private final AtomicLong unroutedCount = new AtomicLong();
+
+    public SiriusConverterMetrics(MeterRegistry registry) {
+        this(registry, DEFAULT_JOB_NAME);
+    }
+
+    /**
+     * @param jobName name of the converter job that the meters are reported for
+     */
+    public SiriusConverterMetrics(MeterRegistry registry, String jobName) {
+        this.registry = registry;
+        this.jobTags = Tags.of(TAG_JOB, (jobName == null) ? DEFAULT_JOB_NAME : jobName);
+        this.isConvertibleTimer = Timer.builder(PREFIX + "isconvertible")
+          .description("Time spent evaluating if a rawdata message is convertible")
+          .tags(jobTags)
+          .register(registry);
+        this.pseudonymizationTimer = Timer.builder(PREFIX + "pseudonymization")
+          .description("Time spent pseudonymizing values")
+          .tags(jobTags)
+          .register(registry);
+        this.decodedItemCacheHits = decodedItemCacheCounter("hit");
+        this.decodedItemCacheMisses = decodedItemCacheCounter("miss");
+        for (SkipReason reason : SkipReason.values()) {
+            skipCounters.put(reason, Counter.builder(PREFIX + "skipped")
+              .description("Number of skipped rawdata messages")
+              .tag("reason", reason.tag)
+              .tags(jobTags)
+              .register(registry));
+            skipCounts.put(reason, new AtomicLong());
+        }
+    }
+
+    private Counter decodedItemCacheCounter(String result) {
+        return Counter.builder(PREFIX + "decoded.cache")
+          .description("Number of conversions that did (hit) or did not (miss) reuse the hendelse decoded by isConvertible")
+          .tag("result", result)
+          .tags(jobTags)
+          .register(registry);
+    }
+
+    /**
+     * @return metrics that are not reported anywhere
+     */
+    public static SiriusConverterMetrics noop() {
+        return new SiriusConverterMetrics(new CompositeMeterRegistry());
+    }
+
+    /**
+     * Count a lookup of a hendelse decoded up front (see DecodedItemCache)
+     */
+    public void decodedItemCacheLookup(boolean hit) {
+        (hit ? decodedItemCacheHits : decodedItemCacheMisses).increment();
+    }
+
+    /**
+     * @return the number of messages skipped for the given reason so far, including this one. This is tracked
+     * independently of the meter registry, and can be used to sample log statements.
+     */
+    public long skipped(SkipReason reason) {
+        skipCounters.get(reason).increment();
+        return skipCounts.get(reason).incrementAndGet();
+    }
+
+    /**
+     * @return the number of rawdata items (of any name) that could not be routed to a data element so far, including
+     * this one. Like {@link #skipped(SkipReason)}, this can be used to sample log statements.
+     */
+    public long unrouted(String rawdataItemName) {
+        unroutedCounters.computeIfAbsent(rawdataItemName, item -> Counter.builder(PREFIX + "item.unrouted")
+          .description("Number of rawdata items that did not match any of the data elements that share the rawdata item")
+          .tag("item", item)
+          .tags(jobTags)
+          .register(registry)
+        ).increment();
+        return unroutedCount.incrementAndGet();
+    }
+
+    /**
+     * Report size, hit rate, evictions etc of a pseudo cache
+     */
+    public void monitor(PseudoCache pseudoCache) {
+        GuavaCacheMetrics.monitor(registry, pseudoCache.getCache(), PREFIX + "pseudo.cache", jobTags);
+    }
+
+    /**
+     * Report the size and queue depth of a worker pool
+     */
+    public void monitor(ThreadPoolExecutor workerPool) {
+        Gauge.builder(PREFIX + "workers", workerPool, ThreadPoolExecutor::getPoolSize)
+          .description("Number of conversion threads")
+          .tags(jobTags)
+          .register(registry);
+        Gauge.builder(PREFIX + "workers.queued", workerPool, pool -> pool.getQueue().size())
+          .description("Number of conversion tasks waiting for a thread")
+          .tags(jobTags)
+          .register(registry);
+    }
+
+    public DataElementMetrics dataElementMetrics(SchemaAdapter schemaAdapter) {
+        return new DataElementMetrics(schemaAdapter);
+    }
+
+    /**
+     * Meters associated with a specific data element (SchemaAdapter)
+     */
+    @Getter
+    public class DataElementMetrics {
+
+        /**
+         * Time spent converting the rawdata item
+         */
+        private final Timer convertTimer;
+
+        /**
+         * Size of the rawdata item
+         */
+        private final DistributionSummary bytesIn;
+
+        /**
+         * Number of records produced
+         */
+        private final Counter recordsOut;
+
+        /**
+         * Number of screened (skjermet) records
+         */
+        private final Counter skjermet;
+
+        /**
+         * Number of rawdata items where conversion was stopped since the max number of records was reached
+         */
+        private final Counter truncated;
+
+        /**
+         * Number of rawdata items that failed to convert
+         */
+        private final Counter failed;
+
+        /**
+         * Number of rawdata items that were not converted since they exceeded the max item size
+         */
+        private final Counter oversized;
+
+        private DataElementMetrics(SchemaAdapter schemaAdapter) {
+            this.convertTimer = Timer.builder(PREFIX + "convertxml")
+              .description("Time spent converting a rawdata item")
+              .tag("schema", schemaAdapter.getSchemaName())
+              .tags(jobTags)
+              .register(registry);
+            this.bytesIn = DistributionSummary.builder(PREFIX + "item.bytes")
+              .description("Size of converted rawdata items")
+              .baseUnit("bytes")
+              .tag("item", schemaAdapter.getRawdataItemName())
+              .tags(jobTags)
+              .register(registry);
+            this.recordsOut = Counter.builder(PREFIX + "records")
+              .description("Number of converted records")
+              .tag("target", schemaAdapter.getTargetItemName())
+              .tags(jobTags)
+              .register(registry);
+            this.skjermet = Counter.builder(PREFIX + "records.skjermet")
+              .description("Number of screened (skjermet) records")
+              .tag("target", schemaAdapter.getTargetItemName())
+              .tags(jobTags)
+              .register(registry);
+            this.truncated = Counter.builder(PREFIX + "item.truncated")
+              .description("Number of rawdata items where conversion was stopped since the max number of records was reached")
+              .tag("target", schemaAdapter.getTargetItemName())
+              .tags(jobTags)
+              .register(registry);
+            this.failed = Counter.builder(PREFIX + "item.failed")
+              .description("Number of rawdata items that failed to convert")
+              .tag("schema", schemaAdapter.getSchemaName())
+              .tags(jobTags)
+              .register(registry);
+            this.oversized = Counter.builder(PREFIX + "item.oversized")
+              .description("Number of rawdata items that were not converted since they exceeded the max item size")
+              .tag("item", schemaAdapter.getRawdataItemName())
+              .tags(jobTags)
+              .register(registry);
+        }
+    }
+
+}
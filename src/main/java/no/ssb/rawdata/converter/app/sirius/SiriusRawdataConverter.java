@@ -1,11 +1,23 @@
 package no.ssb.rawdata.converter.app.sirius;
 
-import com.google.common.collect.Sets;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
+import de.huxhorn.sulky.ulid.ULID;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
-import no.ssb.avro.convert.xml.XmlToRecords;
 import no.ssb.rawdata.api.RawdataMessage;
+import no.ssb.rawdata.converter.app.sirius.DeadLetterWriter.DeadLetter;
+import no.ssb.rawdata.converter.app.sirius.DeadLetterWriter.Reason;
+import no.ssb.rawdata.converter.app.sirius.SampleValidation.SampleValidationException;
+import no.ssb.rawdata.converter.app.sirius.SiriusConverterMetrics.DataElementMetrics;
+import no.ssb.rawdata.converter.app.sirius.SiriusConverterMetrics.SkipReason;
+import no.ssb.rawdata.converter.app.sirius.SiriusRawdataConverterConfig.SkjermetHandling;
+import no.ssb.rawdata.converter.app.sirius.XmlConversionPlan.DecodeResult;
+import no.ssb.rawdata.converter.app.sirius.XmlConversionPlan.FieldRef;
 import no.ssb.rawdata.converter.app.sirius.schema.SchemaAdapter;
 import no.ssb.rawdata.converter.app.sirius.schema.SiriusSchemas;
+import no.ssb.rawdata.converter.app.sirius.schema.TargetSchemaCache;
+import no.ssb.rawdata.converter.app.sirius.xml.XmlHeaderReader;
 import no.ssb.rawdata.converter.core.convert.ConversionResult;
 import no.ssb.rawdata.converter.core.convert.ConversionResult.ConversionResultBuilder;
 import no.ssb.rawdata.converter.core.convert.RawdataConverter;
@@ -15,51 +27,267 @@ import no.ssb.rawdata.converter.core.schema.AggregateSchemaBuilder;
 import no.ssb.rawdata.converter.core.schema.DcManifestSchemaAdapter;
 import no.ssb.rawdata.converter.util.AvroSchemaUtil;
 import no.ssb.rawdata.converter.util.RawdataMessageAdapter;
-import no.ssb.rawdata.converter.util.Xml;
 import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.generic.GenericRecordBuilder;
 
-import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static no.ssb.rawdata.converter.util.RawdataMessageAdapter.posAndIdOf;
 
+/**
+ * Converts sirius rawdata messages (hendelse and skattemelding) to avro records.
+ *
+ * <p>The converter is thread-safe: All state is either immutable once the converter is constructed, published as a
+ * whole by {@link #init(Collection)}, or (as for caches and metrics) safe for concurrent use.</p>
+ */
 @Slf4j
-public class SiriusRawdataConverter implements RawdataConverter {
+public class SiriusRawdataConverter implements RawdataConverter, AutoCloseable {
 
     private static final String FIELDNAME_MANIFEST = "manifest";
     private static final String FIELDNAME_DC_MANIFEST = "collector";
     private static final String FIELDNAME_CONVERTER_MANIFEST = "converter";
+    private static final String HENDELSE_SCHEMA_NAME = "sirius-hendelse-v1_3";
+    private static final String FIELDNAME_SKJERMET = "skjermet";
+    private static final String SKJERMET_TARGET_ITEM_SUFFIX = "Skjermet";
+    private static final String ELEMENT_GJELDER_PERIODE = "gjelderPeriode";
+    private static final String ELEMENT_IDENTIFIKATOR = "identifikator";
+    private static final String ELEMENT_SEKVENSNUMMER = "sekvensnummer";
+    private static final Set<String> DEDUP_ELEMENTS = Set.of(ELEMENT_GJELDER_PERIODE, ELEMENT_IDENTIFIKATOR, ELEMENT_SEKVENSNUMMER);
+    private static final Duration MISSING_ITEMS_REPORT_INTERVAL = Duration.ofMinutes(1);
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(30);
+    private static final Schema CONVERTER_MANIFEST_SCHEMA = AvroSchemaUtil.readAvroSchema("schema/converter-manifest.avsc");
+
+    /**
+     * Converter manifest with the partition of the message's period. Only used if periods are configured, so that
+     * the target schema of other jobs is unchanged.
+     */
+    private static final Schema PARTITIONED_CONVERTER_MANIFEST_SCHEMA = AvroSchemaUtil.readAvroSchema("schema/converter-manifest-partitioned.avsc");
 
     private final SiriusRawdataConverterConfig converterConfig;
     private final ValueInterceptorChain valueInterceptorChain;
-    private final Set<String> requiredRawdataItems;
+    private final RequiredItems requiredRawdataItems;
 
     private final Schema converterManifestSchema;
-    private DcManifestSchemaAdapter dcManifestSchemaAdapter;
-    private Schema manifestSchema;
+    private final GenericRecord converterManifestData;
     private final Set<SchemaAdapter> dataSchemas;
-    private Schema targetAvroSchema;
+
+    /**
+     * State derived from sample messages by {@link #init(Collection)}. Immutable, and published as a whole.
+     */
+    private volatile InitState initState;
+    private final List<XmlConversionPlan> conversionPlans;
+    private final XmlConversionPlan hendelsePlan;
+    private final String hendelseItemName;
+    private final Map<String, GenericRecord> converterManifestDataByPeriod;
+    private final boolean partitioned;
+    private final Set<String> routedRawdataItems;
+    private final DecodedItemCache<List<GenericRecord>> decodedItemCache;
+    private final DecodedItemCache<DedupEntry> dedupEntryCache;
+    private final ExecutorService conversionExecutor;
+    private final DeadLetterWriter deadLetterWriter;
+    private final DedupIndex dedupIndex;
+    private final Path dedupCheckpoint;
+    private final ScheduledExecutorService dedupCheckpointer;
+    private final SiriusConverterMetrics metrics;
+    private final Map<XmlConversionPlan, DataElementMetrics> dataElementMetrics;
+    private final Map<XmlConversionPlan, ValueInterceptorChain> dataElementInterceptors;
+    private final Map<XmlConversionPlan, FieldRef> skjermetFields;
 
     public SiriusRawdataConverter(SiriusRawdataConverterConfig converterConfig, ValueInterceptorChain valueInterceptorChain) {
+        this(converterConfig, valueInterceptorChain, SiriusConverterMetrics.noop());
+    }
+
+    public SiriusRawdataConverter(SiriusRawdataConverterConfig converterConfig, ValueInterceptorChain valueInterceptorChain, SiriusConverterMetrics metrics) {
+        this(converterConfig, valueInterceptorChain, schemaAdapter -> valueInterceptorChain, metrics);
+    }
+
+    /**
+     * @param valueInterceptorChain value interceptors applied to manifest values
+     * @param dataElementInterceptors resolves the value interceptors to apply when converting a specific data element.
+     *                                This allows for interceptors that are tailored to (e.g. pruned against) the
+     *                                data element's schema.
+     */
+    public SiriusRawdataConverter(SiriusRawdataConverterConfig converterConfig, ValueInterceptorChain valueInterceptorChain,
+                                  Function<SchemaAdapter, ValueInterceptorChain> dataElementInterceptors, SiriusConverterMetrics metrics) {
         this.converterConfig = converterConfig;
         this.valueInterceptorChain = valueInterceptorChain;
-        this.converterManifestSchema = AvroSchemaUtil.readAvroSchema("schema/converter-manifest.avsc");
+        this.metrics = metrics;
         this.dataSchemas = converterConfig.getDataElements()
           .stream().map(schemaDescriptor -> SiriusSchemas.getBySchemaDescriptor(schemaDescriptor))
           .collect(Collectors.toSet());
         if (dataSchemas.isEmpty()) {
             throw new SiriusRawdataConverterException("No data elements configured. Make sure to specify at least one target schema (app-config.data-elements[].schema-name)");
         }
+        this.converterManifestSchema = converterConfig.getPeriods().isEmpty() ? CONVERTER_MANIFEST_SCHEMA : PARTITIONED_CONVERTER_MANIFEST_SCHEMA;
+        this.converterManifestData = newConverterManifestData(converterManifestSchema, dataSchemas, null);
 
         this.requiredRawdataItems = dataSchemas.stream()
           .filter(schema -> !schema.getOptional())
           .map(schema -> schema.getRawdataItemName())
-          .collect(Collectors.toSet());
+          .collect(Collectors.collectingAndThen(Collectors.toSet(), items -> new RequiredItems(items, MISSING_ITEMS_REPORT_INTERVAL)));
+
+        // Sorted, so that records are always added to the conversion result in the same order
+        this.conversionPlans = dataSchemas.stream()
+          .sorted(Comparator.comparing(SchemaAdapter::getTargetItemName).thenComparing(SchemaAdapter::getSchemaName))
+          .map(XmlConversionPlan::compile)
+          .collect(Collectors.toList());
+        this.dataElementMetrics = conversionPlans.stream()
+          .collect(Collectors.toMap(plan -> plan, plan -> metrics.dataElementMetrics(plan.getSchemaAdapter())));
+        this.dataElementInterceptors = conversionPlans.stream()
+          .collect(Collectors.toMap(plan -> plan, plan -> dataElementInterceptors.apply(plan.getSchemaAdapter())));
+
+        this.skjermetFields = new HashMap<>();
+        conversionPlans.forEach(plan -> plan.field(FIELDNAME_SKJERMET).ifPresent(field -> skjermetFields.put(plan, field)));
+
+        // Only decode hendelse up front if it is going to be converted anyway
+        this.hendelsePlan = conversionPlans.stream()
+          .filter(plan -> plan.getSchemaAdapter().getSchemaName().equals(HENDELSE_SCHEMA_NAME))
+          .findFirst()
+          .orElse(null);
+        this.hendelseItemName = (hendelsePlan == null) ? "entry" : hendelsePlan.getSchemaAdapter().getRawdataItemName();
+
+        this.decodedItemCache = new DecodedItemCache<>(converterConfig.getDecodedItemCacheSize());
+        this.dedupEntryCache = new DecodedItemCache<>(converterConfig.getDecodedItemCacheSize());
+
+        this.routedRawdataItems = converterConfig.isSchemaRouting() ? routedRawdataItemsOf(conversionPlans) : Set.of();
+
+        // Accepted periods, mapped to the converter manifest data of the period's partition
+        Map<String, GenericRecord> manifestDataByPeriod = new HashMap<>();
+        if (converterConfig.getPeriod() != null) {
+            manifestDataByPeriod.put(converterConfig.getPeriod(), converterManifestData);
+        }
+        if (converterConfig.isSchemaRouting()) {
+            dataSchemas.forEach(schema -> schema.getPeriods().forEach(period -> manifestDataByPeriod.putIfAbsent(period, converterManifestData)));
+        }
+        converterConfig.getPeriods().forEach((period, partition) -> manifestDataByPeriod.put(period,
+          (partition == null || partition.isEmpty()) ? converterManifestData : newConverterManifestData(converterManifestSchema, dataSchemas, partition)
+        ));
+        this.converterManifestDataByPeriod = Map.copyOf(manifestDataByPeriod);
+        this.partitioned = converterManifestDataByPeriod.values().stream().anyMatch(data -> data != converterManifestData);
+
+        this.conversionExecutor = converterConfig.isParallelConversion() ? newWorkerPool(converterConfig, conversionPlans.size(), metrics) : null;
+        this.deadLetterWriter = (converterConfig.getDeadLetterDir() != null)
+          ? new DeadLetterWriter(Path.of(converterConfig.getDeadLetterDir()), converterConfig.getDeadLetterMaxFileSizeBytes(),
+              converterConfig.getDeadLetterBatchSize(), converterConfig.getDeadLetterFlushIntervalMillis())
+          : null;
+        this.dedupCheckpoint = (converterConfig.isDedup() && converterConfig.getDedupCheckpointPath() != null)
+          ? Path.of(converterConfig.getDedupCheckpointPath())
+          : null;
+        this.dedupIndex = converterConfig.isDedup()
+          ? (dedupCheckpoint == null) ? new DedupIndex() : DedupIndex.restore(dedupCheckpoint)
+          : null;
+        this.dedupCheckpointer = (dedupCheckpoint == null) ? null : newDedupCheckpointer(converterConfig.getDedupCheckpointIntervalSeconds());
+    }
+
+    /**
+     * @return the data elements of the target avro schema, keyed by target item name
+     */
+    private Map<String, SchemaAdapter> targetItems() {
+        Map<String, SchemaAdapter> targetItems = new LinkedHashMap<>();
+        dataSchemas.forEach(schema -> targetItems.put(schema.getTargetItemName(), schema));
+        if (converterConfig.getSkjermetHandling() == SkjermetHandling.SEPARATE) {
+            conversionPlans.stream()
+              .filter(skjermetFields::containsKey)
+              .forEach(plan -> targetItems.put(skjermetTargetItemNameOf(plan.getSchemaAdapter()), plan.getSchemaAdapter()));
+        }
+        return targetItems;
+    }
+
+    /**
+     * Checkpoint the dedup index periodically. A final checkpoint is written on close.
+     */
+    private ScheduledExecutorService newDedupCheckpointer(long intervalSeconds) {
+        ScheduledExecutorService checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sirius-dedup-checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        checkpointer.scheduleWithFixedDelay(this::checkpointDedupIndex, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        return checkpointer;
+    }
+
+    private void checkpointDedupIndex() {
+        try {
+            dedupIndex.checkpoint(dedupCheckpoint);
+        }
+        catch (RuntimeException e) {
+            log.error("Error checkpointing dedup index", e);
+        }
+    }
+
+    /**
+     * A message has at most one conversion task per data element, so there is no point in having more threads than
+     * data elements.
+     */
+    private static ExecutorService newWorkerPool(SiriusRawdataConverterConfig converterConfig, int dataElementCount, SiriusConverterMetrics metrics) {
+        int parallelism = Optional.ofNullable(converterConfig.getParallelism()).orElse(Runtime.getRuntime().availableProcessors());
+        int size = Math.max(1, Math.min(parallelism, dataElementCount));
+        AtomicInteger threadSeq = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "sirius-converter-" + threadSeq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        metrics.monitor(pool);
+        return pool;
+    }
+
+    /**
+     * Release the resources of the converter: Stop the conversion threads (if any), write a final dedup checkpoint
+     * (if enabled), and write and close the dead-letter output (if enabled). Conversions that are in progress are
+     * allowed to complete.
+     */
+    @Override
+    public void close() {
+        if (conversionExecutor != null) {
+            conversionExecutor.shutdown();
+            try {
+                if (! conversionExecutor.awaitTermination(CLOSE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                    log.warn("Conversion threads did not terminate within {}", CLOSE_TIMEOUT);
+                    conversionExecutor.shutdownNow();
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                conversionExecutor.shutdownNow();
+            }
+        }
+        if (dedupCheckpointer != null) {
+            dedupCheckpointer.shutdown();
+            checkpointDedupIndex();
+        }
+        if (deadLetterWriter != null) {
+            deadLetterWriter.close();
+        }
     }
 
     @Override
@@ -72,125 +300,685 @@ public class SiriusRawdataConverter implements RawdataConverter {
           );
 
         RawdataMessageAdapter msg = new RawdataMessageAdapter(sample);
-        dcManifestSchemaAdapter = DcManifestSchemaAdapter.of(sample);
-
-        manifestSchema = new AggregateSchemaBuilder("dapla.rawdata.manifest")
-          .schema("collector", dcManifestSchemaAdapter.getDcManifestSchema())
-          .schema("converter", converterManifestSchema)
-          .build();
+        DcManifestSchemaAdapter dcManifestSchemaAdapter = DcManifestSchemaAdapter.of(sample);
+
+        // Schemas are shared with other converters (jobs) that are built from the same schemas
+        String manifestKey = "manifest|" + TargetSchemaCache.fingerprintOf(dcManifestSchemaAdapter.getDcManifestSchema())
+          + "|" + TargetSchemaCache.fingerprintOf(converterManifestSchema);
+        Schema manifestSchema = TargetSchemaCache.shared().get(manifestKey, () ->
+          new AggregateSchemaBuilder("dapla.rawdata.manifest")
+            .schema("collector", dcManifestSchemaAdapter.getDcManifestSchema())
+            .schema("converter", converterManifestSchema)
+            .build()
+        );
 
         String targetNamespace = "dapla.rawdata.ske.skatt." + msg.getTopic().orElse("dataset");
-        AggregateSchemaBuilder targetSchemaBuilder = new AggregateSchemaBuilder(targetNamespace)
-          .schema("manifest", manifestSchema);
+        Map<String, SchemaAdapter> targetItems = targetItems();
 
-        dataSchemas.forEach(schema -> {
-            targetSchemaBuilder.schema(schema.getTargetItemName(), schema.getSchema());
+        Schema targetAvroSchema = TargetSchemaCache.shared().get(targetSchemaKeyOf(targetNamespace, manifestKey, targetItems), () -> {
+            AggregateSchemaBuilder targetSchemaBuilder = new AggregateSchemaBuilder(targetNamespace)
+              .schema("manifest", manifestSchema);
+            targetItems.forEach((targetItemName, schema) -> targetSchemaBuilder.schema(targetItemName, schema.getSchema()));
+            return targetSchemaBuilder.build();
         });
 
-        targetAvroSchema = targetSchemaBuilder.build();
+        // Fail fast, before any messages are converted, if the configured schemas do not match the data
+        if (converterConfig.isValidateSamples()) {
+            validateSamples(sampleRawdataMessages);
+        }
+
+        this.initState = new InitState(dcManifestSchemaAdapter, manifestSchema,
+          manifestSchema.getField(FIELDNAME_DC_MANIFEST).pos(), manifestSchema.getField(FIELDNAME_CONVERTER_MANIFEST).pos(), targetAvroSchema);
     }
 
-    public DcManifestSchemaAdapter dcManifestSchemaAdapter() {
-        if (dcManifestSchemaAdapter == null) {
-            throw new IllegalStateException("dcManifestSchemaAdapter is null. Make sure RawdataConverter#init() was invoked in advance.");
+    /**
+     * Dry convert the data elements of all sample messages in parallel, and report field coverage and timing per data
+     * element. Values are not intercepted (i.e. not pseudonymized), and nothing is written anywhere.
+     *
+     * @throws SampleValidationException if any data element does not convert any of the samples that contain its
+     * rawdata item
+     */
+    private void validateSamples(Collection<RawdataMessage> sampleRawdataMessages) {
+        SampleValidation validation = new SampleValidation(conversionPlans);
+        long maxItemSizeBytes = converterConfig.getMaxItemSizeBytes();
+        ExecutorService executor = (conversionExecutor != null)
+          ? conversionExecutor
+          : Executors.newFixedThreadPool(Math.max(1, Math.min(sampleRawdataMessages.size(), Runtime.getRuntime().availableProcessors())));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (RawdataMessage sample : sampleRawdataMessages) {
+                // Routing only, without counting or dead-lettering unrouted items, since samples are not converted
+                for (XmlConversionPlan plan : applicablePlans(sample, gjelderPeriodeSupplier(sample), false)) {
+                    byte[] data = sample.get(plan.getSchemaAdapter().getRawdataItemName());
+                    if (maxItemSizeBytes > 0 && data.length > maxItemSizeBytes) {
+                        continue; // Would not be converted anyway
+                    }
+                    futures.add(executor.submit(() -> dryConvert(data, plan, validation)));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        catch (ExecutionException e) {
+            throw new SiriusRawdataConverterException("Error validating sample rawdata messages", e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SiriusRawdataConverterException("Interrupted while validating sample rawdata messages", e);
+        }
+        finally {
+            if (executor != conversionExecutor) {
+                executor.shutdownNow();
+            }
         }
 
-        return dcManifestSchemaAdapter;
+        validation.log();
+        List<String> incompatible = validation.incompatibleSchemaNames();
+        if (! incompatible.isEmpty()) {
+            throw new SampleValidationException("None of the sample rawdata messages could be converted according to " + incompatible
+              + ". Make sure that app-config.data-elements[] specify schemas that match the data (see the sample validation log for details)");
+        }
     }
 
-    @Override
-    public Schema targetAvroSchema() {
-        if (targetAvroSchema == null) {
-            throw new IllegalStateException("targetAvroSchema is null. Make sure RawdataConverter#init() was invoked in advance.");
+    private static void dryConvert(byte[] data, XmlConversionPlan plan, SampleValidation validation) {
+        long start = System.nanoTime();
+        try {
+            List<GenericRecord> records = plan.decode(data, new ValueInterceptorChain());
+            validation.converted(plan, records, System.nanoTime() - start);
+        }
+        catch (Exception e) {
+            validation.failed(plan, e, System.nanoTime() - start);
+        }
+    }
+
+    private InitState initState() {
+        InitState state = initState;
+        if (state == null) {
+            throw new IllegalStateException("Converter is not initialized. Make sure RawdataConverter#init() was invoked in advance.");
         }
 
-        return targetAvroSchema;
+        return state;
+    }
+
+    private static String targetSchemaKeyOf(String targetNamespace, String manifestKey, Map<String, SchemaAdapter> targetItems) {
+        return "target|" + targetNamespace + "|" + manifestKey + "|" + targetItems.entrySet().stream()
+          // Schema fingerprints are included, so that persisted schemas are not reused across schema changes
+          .map(e -> e.getKey() + "=" + e.getValue().getSchemaName() + "@" + TargetSchemaCache.fingerprintOf(e.getValue().getSchema()))
+          .collect(Collectors.joining(","));
+    }
+
+    public DcManifestSchemaAdapter dcManifestSchemaAdapter() {
+        return initState().getDcManifestSchemaAdapter();
+    }
+
+    @Override
+    public Schema targetAvroSchema() {
+        return initState().getTargetAvroSchema();
     }
 
-    // TODO: Use XPath instead
     @Override
     public boolean isConvertible(RawdataMessage rawdataMessage) {
-        // Skip messages that does not contain all required items
-        if (! rawdataMessage.keys().containsAll(requiredRawdataItems)) {
-            log.warn("Missing required rawdata items {}. Skipping rawdataMessage {}", Sets.difference(requiredRawdataItems, rawdataMessage.keys()), posAndIdOf(rawdataMessage));
-            return false;
+        long start = System.nanoTime();
+        try {
+            return evaluate(rawdataMessage);
+        }
+        finally {
+            metrics.getIsConvertibleTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
+    }
 
-        RawdataMessageAdapter msg = new RawdataMessageAdapter(rawdataMessage);
+    // TODO: Use XPath instead
+    private boolean evaluate(RawdataMessage rawdataMessage) {
+        // Skip messages that does not contain all required items
+        long missingItems = requiredRawdataItems.missing(rawdataMessage);
+        if (missingItems != 0) {
+            return skipMissingItems(rawdataMessage, missingItems);
+        }
 
         // TODO: Move this to a validation method associated with each schema adapter instead?
 
         // Skip messages that does not match "hendelse.gjelderPeriode"
-        if (msg.hasItem("entry")) {
-            Map<String, Object> hendelse = Xml.toGenericMap(msg.getItemAsString("entry"));
-            String gjelderPeriode = (String) hendelse.get("gjelderPeriode");
-            if (! gjelderPeriode.equals(converterConfig.getPeriod())) {
-                log.info("Rawdata gjelderPeriode={} is not compatible with period {}. Skipping rawdata item {}", gjelderPeriode, converterConfig.getPeriod(), posAndIdOf(rawdataMessage));
-                return false;
+        if (rawdataMessage.keys().contains(hendelseItemName)) {
+            byte[] hendelse = rawdataMessage.get(hendelseItemName);
+            // If deduplicating, all hendelse values of interest are read in a single pass
+            Map<String, String> hendelseValues = (dedupIndex == null) ? null : XmlHeaderReader.childElementValues(hendelse, DEDUP_ELEMENTS);
+            String gjelderPeriode = (hendelseValues == null)
+              ? XmlHeaderReader.childElementValue(hendelse, ELEMENT_GJELDER_PERIODE).orElse(null)
+              : hendelseValues.get(ELEMENT_GJELDER_PERIODE);
+            if (gjelderPeriode == null) {
+                return skip(SkipReason.NO_PERIOD, rawdataMessage, null);
+            }
+            else if (! converterManifestDataByPeriod.containsKey(gjelderPeriode)) {
+                return skip(SkipReason.WRONG_PERIOD, rawdataMessage, gjelderPeriode);
+            }
+
+            // Skip hendelser that are superseded by an already converted hendelse for the same taxpayer and period
+            DedupEntry dedupEntry = (hendelseValues == null) ? null : dedupEntryOf(rawdataMessage, hendelseValues);
+            if (dedupEntry != null) {
+                if (isStale(rawdataMessage, dedupEntry)) {
+                    return skip(SkipReason.STALE, rawdataMessage, gjelderPeriode);
+                }
+                // Registered once the message is converted, without reading the hendelse again
+                dedupEntryCache.put(rawdataMessage, hendelseItemName, dedupEntry);
             }
         }
         else {
-            log.info("No hendelse item found. Skipping rawdata item {}", posAndIdOf(rawdataMessage));
-            return false;
+            return skip(SkipReason.NO_HENDELSE, rawdataMessage, null);
         }
-/*
-        // Skip messages with screened skattemelding-records // TODO: Include these somehow
-        if (msg.hasItem("skattemelding")) {
-            Map<String, Object> skattemelding = Xml.toGenericMap(msg.getItemAsString("skattemelding"));
-            if ("true".equals(skattemelding.get("skjermet"))) {
-                log.info("Skattemelding is marked as being 'skjermet'. Skipping rawdata item {}", posAndIdOf(rawdataMessage));
-                return false;
+        // The message will be converted. Decode hendelse now, so that convert can pick it up without parsing it again.
+        if (hendelsePlan != null) {
+            try {
+                decodedItemCache.put(rawdataMessage, hendelseItemName, decodeXml(rawdataMessage, hendelsePlan));
+            }
+            catch (SiriusRawdataConverterException e) {
+                // Leave it to convert to report the error
+                log.debug("Unable to decode hendelse up front for rawdata item {}", posAndIdOf(rawdataMessage), e);
             }
         }
-*/
+
         return true;
     }
 
+    /**
+     * This only looks up the dedup index. The hendelse is registered once the message has been converted (see
+     * #dedupConverted), so that evaluating a message several times, or a message that fails to convert, does not
+     * affect the outcome.
+     *
+     * @return true if a hendelse with the same or a higher sekvensnummer has already been converted for the same
+     * identifikator and period. Messages at or before the position of the restored dedup checkpoint are never
+     * considered stale, since these may be redeliveries of messages that were converted, but not committed, before a
+     * restart.
+     */
+    private boolean isStale(RawdataMessage rawdataMessage, DedupEntry dedupEntry) {
+        ULID.Value restoredPosition = dedupIndex.getRestoredPosition();
+        if (restoredPosition != null && rawdataMessage.ulid().compareTo(restoredPosition) <= 0) {
+            return false;
+        }
+
+        Long converted = dedupIndex.get(dedupEntry.getKey());
+        return converted != null && converted >= dedupEntry.getSekvensnummer();
+    }
+
+    /**
+     * @return the dedup index entry of a hendelse, or null if the hendelse lacks identifikator, gjelderPeriode or a
+     * valid sekvensnummer. Such hendelser are never considered stale, and are not registered in the dedup index.
+     */
+    private DedupEntry dedupEntryOf(RawdataMessage rawdataMessage, Map<String, String> hendelseValues) {
+        String identifikator = hendelseValues.get(ELEMENT_IDENTIFIKATOR);
+        String sekvensnummer = hendelseValues.get(ELEMENT_SEKVENSNUMMER);
+        String gjelderPeriode = hendelseValues.get(ELEMENT_GJELDER_PERIODE);
+        if (identifikator == null || sekvensnummer == null || gjelderPeriode == null) {
+            return null;
+        }
+
+        try {
+            return new DedupEntry(DedupIndex.keyOf(identifikator, gjelderPeriode), Long.parseLong(sekvensnummer));
+        }
+        catch (NumberFormatException e) {
+            log.debug("Invalid sekvensnummer '{}' in rawdata item {}", sekvensnummer, posAndIdOf(rawdataMessage));
+            return null;
+        }
+    }
+
+    /**
+     * Register the hendelse of a converted rawdata message in the dedup index (if enabled). The hendelse is only read
+     * again if the message was not evaluated by isConvertible up front.
+     */
+    private void dedupConverted(RawdataMessage rawdataMessage) {
+        byte[] hendelse = (dedupIndex == null) ? null : rawdataMessage.get(hendelseItemName);
+        if (hendelse == null) {
+            return;
+        }
+
+        DedupEntry dedupEntry = dedupEntryCache.take(rawdataMessage, hendelseItemName)
+          .orElseGet(() -> dedupEntryOf(rawdataMessage, XmlHeaderReader.childElementValues(hendelse, DEDUP_ELEMENTS)));
+        if (dedupEntry != null) {
+            dedupIndex.offer(dedupEntry.getKey(), dedupEntry.getSekvensnummer(), rawdataMessage.ulid());
+        }
+    }
+
+    /**
+     * Count a rawdata message with missing required items. Misses are aggregated, and reported at most once per
+     * {@link #MISSING_ITEMS_REPORT_INTERVAL}.
+     *
+     * @return false
+     */
+    private boolean skipMissingItems(RawdataMessage rawdataMessage, long missingItems) {
+        metrics.skipped(SkipReason.MISSING_ITEMS);
+        if (requiredRawdataItems.recordMiss(missingItems)) {
+            log.warn("Skipped rawdata messages with missing required rawdata items (misses per item since last report: {}). Latest: rawdata item {}",
+              requiredRawdataItems.drainMissCounts(), posAndIdOf(rawdataMessage));
+        }
+        else if (log.isDebugEnabled()) {
+            log.debug("Missing required rawdata items {}. Skipping rawdata item {}", requiredRawdataItems.itemNamesOf(missingItems), posAndIdOf(rawdataMessage));
+        }
+
+        return false;
+    }
+
+    /**
+     * Count a skipped rawdata message. Since skipping e.g. other periods is business as usual, only every n-th skip
+     * (per reason) is logged at info level.
+     *
+     * @return false
+     */
+    private boolean skip(SkipReason reason, RawdataMessage rawdataMessage, String gjelderPeriode) {
+        long count = metrics.skipped(reason);
+        long skipLogInterval = converterConfig.getSkipLogInterval();
+        if (count == 1 || skipLogInterval <= 1 || count % skipLogInterval == 0) {
+            log.info("Skipped {} rawdata messages so far due to {}. Latest: rawdata item {} (gjelderPeriode={}, accepted periods={})",
+              count, reason, posAndIdOf(rawdataMessage), gjelderPeriode, converterManifestDataByPeriod.keySet());
+        }
+        else if (log.isDebugEnabled()) {
+            log.debug("Skipping rawdata item {} due to {} (gjelderPeriode={})", posAndIdOf(rawdataMessage), reason, gjelderPeriode);
+        }
+
+        return false;
+    }
+
+    /**
+     * Combined filtering and conversion of a rawdata message. Each rawdata item is decoded at most once.
+     *
+     * @return the conversion result, or empty if the message is not convertible
+     */
+    public Optional<ConversionResult> evaluateAndConvert(RawdataMessage rawdataMessage) {
+        return isConvertible(rawdataMessage)
+          ? Optional.of(convert(rawdataMessage))
+          : Optional.empty();
+    }
+
     @Override
     public ConversionResult convert(RawdataMessage rawdataMessage) {
-        ConversionResultBuilder resultBuilder = ConversionResult.builder(targetAvroSchema, rawdataMessage);
+        ConversionResultBuilder resultBuilder = ConversionResult.builder(targetAvroSchema(), rawdataMessage);
+        convert(rawdataMessage, resultBuilder::withRecord);
+        return resultBuilder.build();
+    }
+
+    private void convert(RawdataMessage rawdataMessage, BiConsumer<String, GenericRecord> recordSink) {
+        Supplier<String> gjelderPeriode = gjelderPeriodeSupplier(rawdataMessage);
+        addManifest(rawdataMessage, gjelderPeriode, recordSink);
+        convertDataElements(rawdataMessage, gjelderPeriode, recordSink, true);
+    }
+
+    /**
+     * Convert the data elements of a rawdata message, i.e. everything but the manifest
+     */
+    void convertDataElements(RawdataMessage rawdataMessage, BiConsumer<String, GenericRecord> recordSink, boolean parallelDataElements) {
+        convertDataElements(rawdataMessage, gjelderPeriodeSupplier(rawdataMessage), recordSink, parallelDataElements);
+    }
+
+    private void convertDataElements(RawdataMessage rawdataMessage, Supplier<String> gjelderPeriode,
+      BiConsumer<String, GenericRecord> recordSink, boolean parallelDataElements) {
+        if (parallelDataElements && conversionExecutor != null && conversionPlans.size() > 1) {
+            convertXmlInParallel(rawdataMessage, gjelderPeriode, recordSink);
+        }
+        else {
+            applicablePlans(rawdataMessage, gjelderPeriode).forEach(plan -> {
+                try {
+                    if (converterConfig.isAllowPartialConversion()) {
+                        // Decode the whole item before handing over any records, so that a failing item leaves nothing behind
+                        decodedRecords(rawdataMessage, plan).forEach(record -> accept(plan, record, recordSink));
+                    }
+                    else {
+                        convertXml(rawdataMessage, recordSink, plan);
+                    }
+                }
+                catch (SiriusRawdataConverterException e) {
+                    failed(rawdataMessage, plan, e);
+                }
+            });
+        }
+
+        dedupConverted(rawdataMessage);
+    }
 
-        addManifest(rawdataMessage, resultBuilder);
-        dataSchemas.forEach(schema -> {
-            if (rawdataMessage.keys().contains(schema.getRawdataItemName())) {
-                convertXml(rawdataMessage, resultBuilder, schema);
+    /**
+     * Handle a data element that failed to convert: Write it to the dead-letter output (if enabled), and unless
+     * partial conversion is allowed, fail the whole message.
+     */
+    private void failed(RawdataMessage rawdataMessage, XmlConversionPlan plan, SiriusRawdataConverterException e) {
+        dataElementMetrics.get(plan).getFailed().increment();
+        deadLetter(Reason.FAILED, rawdataMessage, plan.getSchemaAdapter(), e.getMessage(), String.valueOf(Throwables.getRootCause(e)));
+
+        if (! converterConfig.isAllowPartialConversion()) {
+            throw e;
+        }
+        log.warn("Leaving out {} from the conversion of rawdata item {}", plan.getSchemaAdapter().getSchemaName(), posAndIdOf(rawdataMessage), e);
+    }
+
+    /**
+     * Write a rawdata item that was not (fully) converted to the dead-letter output, if enabled
+     */
+    private void deadLetter(Reason reason, RawdataMessage rawdataMessage, SchemaAdapter schemaAdapter, String error, String cause) {
+        deadLetter(reason, rawdataMessage, schemaAdapter.getRawdataItemName(), schemaAdapter.getSchemaName(), error, cause);
+    }
+
+    private void deadLetter(Reason reason, RawdataMessage rawdataMessage, String rawdataItemName, String schemaName, String error, String cause) {
+        if (deadLetterWriter == null) {
+            return;
+        }
+
+        try {
+            deadLetterWriter.write(DeadLetter.builder()
+              .timestamp(Instant.now().toString())
+              .reason(reason)
+              .position(rawdataMessage.position())
+              .id(String.valueOf(rawdataMessage.ulid()))
+              .rawdataItemName(rawdataItemName)
+              .schemaName(schemaName)
+              .error(error)
+              .cause(cause)
+              .build());
+        }
+        catch (RuntimeException deadLetterError) {
+            log.error("Unable to write dead letter for rawdata item {}", posAndIdOf(rawdataMessage), deadLetterError);
+        }
+    }
+
+    /**
+     * @return conversion plans for the data elements that are present in a rawdata message. If schema routing is
+     * enabled, only the data elements that the message is routed to are included. A routed rawdata item without a
+     * root namespace is only routed to data elements that do not specify a root namespace. Routed rawdata items that do not match
+     * any data element are counted and logged (see #unrouted).
+     */
+    private List<XmlConversionPlan> applicablePlans(RawdataMessage rawdataMessage, Supplier<String> gjelderPeriodeSupplier) {
+        return applicablePlans(rawdataMessage, gjelderPeriodeSupplier, true);
+    }
+
+    /**
+     * @param reportUnrouted if false, routed rawdata items that do not match any data element are left out without
+     *                       being counted, logged or dead-lettered, i.e. routing has no side effects
+     */
+    private List<XmlConversionPlan> applicablePlans(RawdataMessage rawdataMessage, Supplier<String> gjelderPeriodeSupplier, boolean reportUnrouted) {
+        List<XmlConversionPlan> plans = new ArrayList<>(conversionPlans.size());
+        String gjelderPeriode = null;
+        Map<String, String> rootNamespaces = null;
+        Set<String> routedItems = null;
+
+        for (XmlConversionPlan plan : conversionPlans) {
+            SchemaAdapter schemaAdapter = plan.getSchemaAdapter();
+            String rawdataItemName = schemaAdapter.getRawdataItemName();
+            if (! rawdataMessage.keys().contains(rawdataItemName)) {
+                continue;
+            }
+
+            if (routedRawdataItems.contains(rawdataItemName)) {
+                if (routedItems == null) {
+                    routedItems = new HashSet<>();
+                }
+                routedItems.add(rawdataItemName);
+
+                if (! schemaAdapter.getPeriods().isEmpty()) {
+                    if (gjelderPeriode == null) {
+                        gjelderPeriode = gjelderPeriodeSupplier.get();
+                    }
+                    if (! schemaAdapter.getPeriods().contains(gjelderPeriode)) {
+                        continue;
+                    }
+                }
+
+                if (plan.getRootNamespace() != null) {
+                    if (rootNamespaces == null) {
+                        rootNamespaces = new HashMap<>();
+                    }
+                    String rootNamespace = rootNamespaces.computeIfAbsent(rawdataItemName, item ->
+                      XmlHeaderReader.rootElementNamespace(rawdataMessage.get(item)).orElse("")
+                    );
+                    if (! rootNamespace.equals(plan.getRootNamespace())) {
+                        continue;
+                    }
+                }
+            }
+
+            plans.add(plan);
+        }
+
+        if (reportUnrouted && routedItems != null) {
+            for (String rawdataItemName : routedItems) {
+                if (plans.stream().noneMatch(plan -> plan.getSchemaAdapter().getRawdataItemName().equals(rawdataItemName))) {
+                    unrouted(rawdataMessage, rawdataItemName, gjelderPeriode);
+                }
+            }
+        }
+
+        return plans;
+    }
+
+    /**
+     * Count and (sampled) log a routed rawdata item that does not match any data element, and thus is left out of
+     * the conversion
+     */
+    private void unrouted(RawdataMessage rawdataMessage, String rawdataItemName, String gjelderPeriode) {
+        long count = metrics.unrouted(rawdataItemName);
+        deadLetter(Reason.UNROUTED, rawdataMessage, rawdataItemName, null, "Rawdata item did not match any data element (gjelderPeriode="
+          + gjelderPeriode + ")", null);
+        long skipLogInterval = converterConfig.getSkipLogInterval();
+        if (count == 1 || skipLogInterval <= 1 || count % skipLogInterval == 0) {
+            log.warn("Left out {} rawdata items so far that did not match any data element. Latest: {} of rawdata item {} (gjelderPeriode={})",
+              count, rawdataItemName, posAndIdOf(rawdataMessage), gjelderPeriode);
+        }
+        else if (log.isDebugEnabled()) {
+            log.debug("Rawdata item {} of {} did not match any data element (gjelderPeriode={})", rawdataItemName, posAndIdOf(rawdataMessage), gjelderPeriode);
+        }
+    }
+
+    /**
+     * @return hendelse.gjelderPeriode of a rawdata message, read on first use only. This allows the manifest and the
+     * schema routing of a message to share a single read of the hendelse.
+     */
+    private Supplier<String> gjelderPeriodeSupplier(RawdataMessage rawdataMessage) {
+        return Suppliers.memoize(() -> gjelderPeriodeOf(rawdataMessage));
+    }
+
+    private String gjelderPeriodeOf(RawdataMessage rawdataMessage) {
+        byte[] hendelse = rawdataMessage.get(hendelseItemName);
+        return (hendelse == null) ? "" : XmlHeaderReader.childElementValue(hendelse, ELEMENT_GJELDER_PERIODE).orElse("");
+    }
+
+    /**
+     * @return names of rawdata items that are shared by several data elements, and thus are subject to routing
+     */
+    private static Set<String> routedRawdataItemsOf(List<XmlConversionPlan> plans) {
+        Set<String> targetItemNames = new HashSet<>();
+        plans.forEach(plan -> {
+            if (! targetItemNames.add(plan.getSchemaAdapter().getTargetItemName())) {
+                throw new SiriusRawdataConverterException("Schema routing requires that all data elements have distinct target item names, but '"
+                  + plan.getSchemaAdapter().getTargetItemName() + "' is used by several. Make sure to specify app-config.data-elements[].target-item-name");
             }
         });
 
-        return resultBuilder.build();
+        return plans.stream()
+          .collect(Collectors.groupingBy(plan -> plan.getSchemaAdapter().getRawdataItemName(), Collectors.counting()))
+          .entrySet().stream()
+          .filter(e -> e.getValue() > 1)
+          .map(Map.Entry::getKey)
+          .collect(Collectors.toUnmodifiableSet());
     }
 
-    void addManifest(RawdataMessage rawdataMessage, ConversionResultBuilder resultBuilder) {
-        GenericRecord manifest = new GenericRecordBuilder(manifestSchema)
-          .set(FIELDNAME_DC_MANIFEST, dcManifestSchemaAdapter().newRecord(rawdataMessage, valueInterceptorChain))
-          .set(FIELDNAME_CONVERTER_MANIFEST, converterManifestData())
-          .build();
+    /**
+     * Convert the data elements of a rawdata message in parallel. Results are added to the result builder in the
+     * same order as when converting sequentially.
+     */
+    void convertXmlInParallel(RawdataMessage rawdataMessage, Supplier<String> gjelderPeriode, BiConsumer<String, GenericRecord> recordSink) {
+        Map<XmlConversionPlan, Future<List<GenericRecord>>> futures = new LinkedHashMap<>();
+        applicablePlans(rawdataMessage, gjelderPeriode).forEach(plan ->
+          futures.put(plan, conversionExecutor.submit(() -> decodedRecords(rawdataMessage, plan)))
+        );
+
+        futures.forEach((plan, future) -> {
+            List<GenericRecord> records;
+            try {
+                records = future.get();
+            }
+            catch (ExecutionException e) {
+                if (! converterConfig.isAllowPartialConversion()) {
+                    futures.values().forEach(f -> f.cancel(true));
+                }
+                failed(rawdataMessage, plan, (e.getCause() instanceof SiriusRawdataConverterException)
+                  ? (SiriusRawdataConverterException) e.getCause()
+                  : new SiriusRawdataConverterException("Error converting sirius " + plan.getSchemaAdapter().getRawdataItemName() + " data at " + posAndIdOf(rawdataMessage), e.getCause()));
+                return;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SiriusRawdataConverterException("Interrupted while converting sirius data at " + posAndIdOf(rawdataMessage), e);
+            }
 
-        resultBuilder.withRecord(FIELDNAME_MANIFEST, manifest);
+            records.forEach(record -> accept(plan, record, recordSink));
+        });
     }
 
-    GenericRecord converterManifestData() {
+    void addManifest(RawdataMessage rawdataMessage, Supplier<String> gjelderPeriode, BiConsumer<String, GenericRecord> recordSink) {
+        // All manifest fields are set explicitly, so there is no need to go via GenericRecordBuilder's default handling
+        InitState init = initState();
+        GenericData.Record manifest = new GenericData.Record(init.getManifestSchema());
+        manifest.put(init.getManifestDcPos(), init.getDcManifestSchemaAdapter().newRecord(rawdataMessage, valueInterceptorChain));
+        manifest.put(init.getManifestConverterPos(), partitioned ? converterManifestData(gjelderPeriode.get()) : converterManifestData);
+
+        recordSink.accept(FIELDNAME_MANIFEST, manifest);
+    }
+
+    /**
+     * @return converter manifest data of the partition that a rawdata message belongs to. This is constant for a
+     * given config, and shared by all messages of the partition.
+     */
+    private GenericRecord converterManifestData(String gjelderPeriode) {
+        return converterManifestDataByPeriod.getOrDefault(gjelderPeriode, converterManifestData);
+    }
+
+    /**
+     * @param partition the partition to record, or null for none. Only supported by the partitioned converter manifest.
+     */
+    private static GenericRecord newConverterManifestData(Schema converterManifestSchema, Collection<SchemaAdapter> dataSchemas, String partition) {
         Map<String, String> schemaInfo = dataSchemas.stream()
           .collect(Collectors.toMap(
             SchemaAdapter::getTargetItemName,
             SchemaAdapter::getSchemaName
           ));
 
-        return new GenericRecordBuilder(converterManifestSchema)
-          .set("schemas", schemaInfo)
-          .build();
+        GenericRecordBuilder builder = new GenericRecordBuilder(converterManifestSchema)
+          .set("schemas", Collections.unmodifiableMap(schemaInfo));
+        if (partition != null) {
+            builder.set("partition", partition);
+        }
+        return builder.build();
+    }
+
+    void convertXml(RawdataMessage rawdataMessage, BiConsumer<String, GenericRecord> recordSink, XmlConversionPlan plan) {
+        Optional<List<GenericRecord>> decoded = decodedUpFront(rawdataMessage, plan);
+        if (decoded.isPresent()) {
+            decoded.get().forEach(record -> accept(plan, record, recordSink));
+        }
+        else {
+            decodeXml(rawdataMessage, plan, record -> accept(plan, record, recordSink));
+        }
+    }
+
+    /**
+     * Hand a converted record to the record sink. Screened (skjermet) records are handled according to the converter
+     * config, using the skjermet value of the already converted record.
+     */
+    private void accept(XmlConversionPlan plan, GenericRecord record, BiConsumer<String, GenericRecord> recordSink) {
+        String targetItemName = plan.getSchemaAdapter().getTargetItemName();
+        FieldRef skjermetField = skjermetFields.get(plan);
+        if (skjermetField != null && Boolean.TRUE.equals(skjermetField.valueOf(record))) {
+            dataElementMetrics.get(plan).getSkjermet().increment();
+            switch (converterConfig.getSkjermetHandling()) {
+                case EXCLUDE:
+                    return;
+                case SEPARATE:
+                    targetItemName = skjermetTargetItemNameOf(plan.getSchemaAdapter());
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        recordSink.accept(targetItemName, record);
+    }
+
+    private static String skjermetTargetItemNameOf(SchemaAdapter schemaAdapter) {
+        return schemaAdapter.getTargetItemName() + SKJERMET_TARGET_ITEM_SUFFIX;
+    }
+
+    /**
+     * @return records decoded up front (e.g. while filtering), or else decode the rawdata item now
+     */
+    private List<GenericRecord> decodedRecords(RawdataMessage rawdataMessage, XmlConversionPlan plan) {
+        return decodedUpFront(rawdataMessage, plan)
+          .orElseGet(() -> decodeXml(rawdataMessage, plan));
     }
 
-    void convertXml(RawdataMessage rawdataMessage, ConversionResultBuilder resultBuilder, SchemaAdapter schemaAdapter) {
+    /**
+     * @return the records of the hendelse plan that were decoded by isConvertible, if any. Only the hendelse is
+     * decoded up front, so other plans are not looked up (or counted).
+     */
+    private Optional<List<GenericRecord>> decodedUpFront(RawdataMessage rawdataMessage, XmlConversionPlan plan) {
+        if (plan != hendelsePlan) {
+            return Optional.empty();
+        }
+
+        Optional<List<GenericRecord>> decoded = decodedItemCache.take(rawdataMessage, hendelseItemName);
+        metrics.decodedItemCacheLookup(decoded.isPresent());
+        return decoded;
+    }
+
+    List<GenericRecord> decodeXml(RawdataMessage rawdataMessage, XmlConversionPlan plan) {
+        List<GenericRecord> records = new ArrayList<>();
+        decodeXml(rawdataMessage, plan, records::add);
+        return records;
+    }
+
+    /**
+     * Decode a rawdata item, handing each record to the supplied consumer as soon as it has been produced.
+     * Oversized items are skipped, and the number of records per item is capped according to the converter config.
+     */
+    void decodeXml(RawdataMessage rawdataMessage, XmlConversionPlan plan, Consumer<GenericRecord> recordConsumer) {
+        SchemaAdapter schemaAdapter = plan.getSchemaAdapter();
+        DataElementMetrics elementMetrics = dataElementMetrics.get(plan);
         byte[] data = rawdataMessage.get(schemaAdapter.getRawdataItemName());
-        try (XmlToRecords records = new XmlToRecords(new ByteArrayInputStream(data), schemaAdapter.getRootElementName(), schemaAdapter.getSchema(), valueInterceptorChain)) {
-            records.forEach(record ->
-              resultBuilder.withRecord(schemaAdapter.getTargetItemName(), record)
-            );
+        elementMetrics.getBytesIn().record(data.length);
+        if (converterConfig.getMaxItemSizeBytes() > 0 && data.length > converterConfig.getMaxItemSizeBytes()) {
+            log.warn("Rawdata item {} is {} bytes, which exceeds the max item size of {} bytes. Skipping conversion of {}", schemaAdapter.getRawdataItemName(), data.length, converterConfig.getMaxItemSizeBytes(), posAndIdOf(rawdataMessage));
+            elementMetrics.getOversized().increment();
+            deadLetter(Reason.OVERSIZED, rawdataMessage, plan.getSchemaAdapter(), "Rawdata item is " + data.length + " bytes, which exceeds the max item size of "
+              + converterConfig.getMaxItemSizeBytes() + " bytes", null);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            DecodeResult res = plan.decode(data, dataElementInterceptors.get(plan), converterConfig.getMaxRecordsPerItem(), recordConsumer);
+            elementMetrics.getRecordsOut().increment(res.getRecordCount());
+            if (res.isTruncated()) {
+                log.warn("Max number of records ({}) reached while converting rawdata item {}. Remaining records (if any) of {} are skipped", converterConfig.getMaxRecordsPerItem(), schemaAdapter.getRawdataItemName(), posAndIdOf(rawdataMessage));
+                elementMetrics.getTruncated().increment();
+                deadLetter(Reason.TRUNCATED, rawdataMessage, plan.getSchemaAdapter(), "Max number of records (" + converterConfig.getMaxRecordsPerItem()
+                  + ") reached. Remaining records (if any) were not converted", null);
+            }
         }
         catch (Exception e) {
             throw new SiriusRawdataConverterException("Error converting sirius " + schemaAdapter.getRawdataItemName() + " data at " + posAndIdOf(rawdataMessage), e);
         }
+        finally {
+            elementMetrics.getConvertTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Value
+    private static class DedupEntry {
+        private final long key;
+        private final long sekvensnummer;
+    }
+
+    @Value
+    private static class InitState {
+        private final DcManifestSchemaAdapter dcManifestSchemaAdapter;
+        private final Schema manifestSchema;
+        private final int manifestDcPos;
+        private final int manifestConverterPos;
+        private final Schema targetAvroSchema;
     }
 
     public static class SiriusRawdataConverterException extends RawdataConverterException {
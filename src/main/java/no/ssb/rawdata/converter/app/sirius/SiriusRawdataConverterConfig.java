@@ -5,7 +5,9 @@ import lombok.Data;
 import lombok.NonNull;
 import no.ssb.rawdata.converter.app.sirius.schema.SchemaDescriptor;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 @ConfigurationProperties("rawdata.converter.sirius")
@@ -19,9 +21,164 @@ public class SiriusRawdataConverterConfig {
     private Set<SchemaDescriptor> dataElements = new HashSet<>();
 
     /**
-     * Only rawdata messages with "hendelse.gjelderPeriode" that matches this
-     * property will be converted.
+     * Only rawdata messages with "hendelse.gjelderPeriode" that matches this property, or any of the additional
+     * periods (see periods), will be converted.
      */
     private String period;
 
-}
\ No newline at end of file
+    /**
+     * Additional periods to convert, mapped to the target partition that rawdata messages of the period belong to
+     * (e.g. <code>2019: skattemelding-2019</code>). The partition is recorded in the converter manifest, and allows
+     * several years to be converted in a single pass of the topic. Use an empty value to not assign a partition.
+     * Note that configuring periods adds a partition field to the converter manifest, and thus alters the target
+     * schema.
+     */
+    private Map<String, String> periods = new HashMap<>();
+
+    /**
+     * Skipped rawdata messages are counted (see sirius.converter.skipped), and only every n-th skip per reason is
+     * logged. Set to 1 to log every skipped message.
+     */
+    private long skipLogInterval = 10_000;
+
+    /**
+     * If true, rawdata messages are routed to the data elements that match the message, whenever several data
+     * elements share the same rawdata item (e.g. skattemelding of different versions). Data elements are matched by
+     * hendelse.gjelderPeriode (see data-elements[].periods) and by the namespace of the rawdata item's root element.
+     * This allows a topic with mixed tax years to be converted in a single pass, with one target item per version.
+     */
+    private boolean schemaRouting = false;
+
+    /**
+     * How to handle screened records, i.e. records with <code>skjermet=true</code>. The skjermet flag is read from the
+     * converted record, so this does not require any additional parsing.
+     */
+    private SkjermetHandling skjermetHandling = SkjermetHandling.INCLUDE;
+
+    /**
+     * If true, init does a dry conversion of the sample rawdata messages in parallel, and reports field coverage and
+     * timing per data element (see SampleValidation). Init fails if a data element does not convert any of the
+     * samples that contain its rawdata item, which typically means that the wrong schema is configured. Off by
+     * default, since it makes init fail for configs that used to start.
+     */
+    private boolean validateSamples = false;
+
+    /**
+     * If true, the data elements of a rawdata message (e.g. hendelse and skattemelding) are converted in parallel.
+     * Records are still produced in a deterministic order.
+     *
+     * <p>Note that this does not raise the number of messages that a job converts concurrently: The converter
+     * framework hands messages to the converter one at a time, so each job converts at most one message (with its
+     * data elements in parallel) at a time.</p>
+     */
+    private boolean parallelConversion = false;
+
+    /**
+     * Number of threads used for parallel conversion. Defaults to the number of available processors, and is capped
+     * to the number of data elements.
+     */
+    private Integer parallelism;
+
+    /**
+     * Max number of pseudonymized values to cache. Caching trades memory for CPU, and is worthwhile if the same
+     * values (e.g. fødselsnummer) occur many times. Set to 0 (default) to disable caching.
+     */
+    private long pseudoCacheMaxSize = 0;
+
+    /**
+     * Number of seconds a pseudonymized value is cached. Set to 0 to keep values until evicted by size.
+     */
+    private long pseudoCacheTtlSeconds = 3600;
+
+    /**
+     * Max number of records to convert from a single rawdata item. Conversion stops (and the rest of the item is not
+     * read) once this limit is reached, and the item is counted as truncated and written to the dead-letter output
+     * (if enabled). Since the rest of the item is not read, this includes items with exactly this many records. Set
+     * to 0 (default) for no limit.
+     */
+    private int maxRecordsPerItem = 0;
+
+    /**
+     * Max size (in bytes) of a rawdata item. Larger items are not converted, but written to the dead-letter output (if
+     * enabled). Set to 0 (default) for no limit.
+     */
+    private long maxItemSizeBytes = 0;
+
+    /**
+     * Max number of rawdata messages whose hendelse is held in memory between isConvertible and convert (see
+     * DecodedItemCache). This must cover the number of messages that the converter framework evaluates ahead of
+     * converting them, or else the hendelse is parsed again by convert (see the decoded.cache metric).
+     */
+    private int decodedItemCacheSize = DecodedItemCache.DEFAULT_CAPACITY;
+
+    /**
+     * If true, a rawdata message is still converted if some of its data elements fail to convert. The failing data
+     * elements are left out of the conversion result (and written to the dead-letter output, if enabled). If false
+     * (default), the whole message fails.
+     */
+    private boolean allowPartialConversion = false;
+
+    /**
+     * Directory to write rawdata items that fail to convert, are oversized, truncated or unrouted to (see
+     * DeadLetterWriter). Dead letters are not written if this is not set. Dead letters only identify the rawdata item
+     * (position, id and item name) and do not include its content, since the content is not pseudonymized.
+     */
+    private String deadLetterDir;
+
+    /**
+     * A new dead-letter file is started once the current file exceeds this size
+     */
+    private long deadLetterMaxFileSizeBytes = 64 * 1024 * 1024;
+
+    /**
+     * Max number of dead letters to buffer before they are written
+     */
+    private int deadLetterBatchSize = 100;
+
+    /**
+     * Buffered dead letters are written at least this often
+     */
+    private long deadLetterFlushIntervalMillis = 1000;
+
+    /**
+     * If true, hendelser are skipped if a hendelse with the same or a higher sekvensnummer has already been converted
+     * for the same identifikator and period (see DedupIndex). This avoids converting stale hendelser (and their
+     * skattemelding) again, e.g. when reprocessing a topic. Hendelser are only registered once converted, so a
+     * message that fails to convert is not considered seen.
+     */
+    private boolean dedup = false;
+
+    /**
+     * Local file to checkpoint the dedup index to, so that a restarted converter resumes where it left off. The index
+     * is only kept in memory if this is not set. The checkpoint holds the position of the latest converted message.
+     * Messages at or before this position are never skipped after a restart, since they may be redelivered if they
+     * were not committed to the target before the restart. A final checkpoint is written when the converter closes.
+     */
+    private String dedupCheckpointPath;
+
+    /**
+     * How often the dedup index is checkpointed
+     */
+    private long dedupCheckpointIntervalSeconds = 60;
+
+    public enum SkjermetHandling {
+
+        /**
+         * Screened records are converted along with all other records. They are identified by the skjermet field.
+         */
+        INCLUDE,
+
+        /**
+         * Screened records are left out
+         */
+        EXCLUDE,
+
+        /**
+         * Screened records are written to another target item, named <code>&lt;target-item-name&gt;Skjermet</code>. Note
+         * that this is just another field of the same target dataset, with the same access as all other fields. Use
+         * EXCLUDE if screened records must not be part of the dataset.
+         */
+        SEPARATE
+    }
+
+}
@@ -0,0 +1,216 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import lombok.Value;
+import no.ssb.avro.convert.xml.XmlToRecords;
+import no.ssb.rawdata.converter.app.sirius.schema.SchemaAdapter;
+import no.ssb.rawdata.converter.core.convert.ValueInterceptorChain;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Conversion plan for a SchemaAdapter, compiled once when the converter is constructed.
+ *
+ * <p>Holds a field index that maps field paths (e.g. <code>tidsperiode/start</code>) to the position of the
+ * corresponding field in the converted records, so that values (e.g. skjermet) can be read from converted records by
+ * position. Note that decoding is not sped up by the plan: XmlToRecords cannot be handed precompiled element lookups,
+ * so it still resolves elements against the schema for every rawdata item.</p>
+ */
+public class XmlConversionPlan {
+
+    private static final String SOURCE_PROP = "source";
+    private static final String SOURCE_ELEMENT_PREFIX = "element ";
+
+    private final SchemaAdapter schemaAdapter;
+    private final Map<String, FieldRef> fieldsByPath;
+    private final String rootNamespace;
+
+    private XmlConversionPlan(SchemaAdapter schemaAdapter, Map<String, FieldRef> fieldsByPath) {
+        this.schemaAdapter = schemaAdapter;
+        this.fieldsByPath = Collections.unmodifiableMap(fieldsByPath);
+        this.rootNamespace = rootNamespaceOf(schemaAdapter.getSchema());
+    }
+
+    public static XmlConversionPlan compile(SchemaAdapter schemaAdapter) {
+        Map<String, FieldRef> fieldsByPath = new HashMap<>();
+        indexFields(schemaAdapter.getSchema(), "", new int[0], new HashSet<>(), fieldsByPath);
+        return new XmlConversionPlan(schemaAdapter, fieldsByPath);
+    }
+
+    public SchemaAdapter getSchemaAdapter() {
+        return schemaAdapter;
+    }
+
+    /**
+     * @return the xml namespace of the source document's root element (as declared by the root fields' "source"
+     * property), or null if this is not known
+     */
+    public String getRootNamespace() {
+        return rootNamespace;
+    }
+
+    /**
+     * @return all indexed fields, keyed by path relative to the root record (e.g. <code>tidsperiode/start</code>)
+     */
+    public Map<String, FieldRef> getFieldsByPath() {
+        return fieldsByPath;
+    }
+
+    /**
+     * @param path field path relative to the root record, e.g. <code>tidsperiode/start</code>
+     */
+    public Optional<FieldRef> field(String path) {
+        return Optional.ofNullable(fieldsByPath.get(path));
+    }
+
+    /**
+     * Decode xml data to records according to the plan's SchemaAdapter
+     */
+    public List<GenericRecord> decode(byte[] data, ValueInterceptorChain valueInterceptorChain) throws Exception {
+        List<GenericRecord> decoded = new ArrayList<>();
+        decode(data, valueInterceptorChain, 0, decoded::add);
+        return decoded;
+    }
+
+    /**
+     * Decode xml data to records according to the plan's SchemaAdapter, handing each record to the supplied consumer
+     * as soon as it has been produced.
+     *
+     * @param maxRecords max number of records to produce. Decoding stops as soon as this limit is reached, and the
+     *                   rest of the document is not read. Use 0 for no limit.
+     */
+    public DecodeResult decode(byte[] data, ValueInterceptorChain valueInterceptorChain, int maxRecords, Consumer<GenericRecord> recordConsumer) throws Exception {
+        try (XmlToRecords records = new XmlToRecords(new ByteArrayInputStream(data), schemaAdapter.getRootElementName(), schemaAdapter.getSchema(), valueInterceptorChain)) {
+            int count = 0;
+            Iterator<GenericRecord> it = records.iterator();
+            while (true) {
+                // The limit is checked before hasNext, since hasNext reads ahead to the next record
+                if (maxRecords > 0 && count >= maxRecords) {
+                    return new DecodeResult(count, true);
+                }
+                if (! it.hasNext()) {
+                    return new DecodeResult(count, false);
+                }
+                recordConsumer.accept(it.next());
+                count++;
+            }
+        }
+    }
+
+    private static void indexFields(Schema recordSchema, String parentPath, int[] parentPositions, Set<String> visitedRecords,
+                                    Map<String, FieldRef> fieldsByPath) {
+        // Guard against recursive schemas
+        if (! visitedRecords.add(recordSchema.getFullName())) {
+            return;
+        }
+
+        for (Schema.Field field : recordSchema.getFields()) {
+            String path = parentPath.isEmpty() ? field.name() : parentPath + "/" + field.name();
+            int[] positions = append(parentPositions, field.pos());
+            Schema fieldSchema = nonNullSchemaOf(field.schema());
+            fieldsByPath.put(path, new FieldRef(path, positions));
+
+            // Nested records are indexed, but not beyond arrays and maps since these do not have a fixed position
+            if (fieldSchema.getType() == Schema.Type.RECORD) {
+                indexFields(fieldSchema, path, positions, visitedRecords, fieldsByPath);
+            }
+        }
+
+        visitedRecords.remove(recordSchema.getFullName());
+    }
+
+    private static String rootNamespaceOf(Schema schema) {
+        for (Schema.Field field : schema.getFields()) {
+            String sourceElement = sourceElementOf(field);
+            if (sourceElement != null && sourceElement.lastIndexOf(':') > 0) {
+                return sourceElement.substring(0, sourceElement.lastIndexOf(':'));
+            }
+        }
+        return null;
+    }
+
+    private static String sourceElementOf(Schema.Field field) {
+        String source = field.getProp(SOURCE_PROP);
+        return (source != null && source.startsWith(SOURCE_ELEMENT_PREFIX))
+          ? source.substring(SOURCE_ELEMENT_PREFIX.length())
+          : null;
+    }
+
+    /**
+     * Resolve optional types, i.e. unions of null and one other type, to the non-null type
+     */
+    private static Schema nonNullSchemaOf(Schema schema) {
+        if (schema.getType() == Schema.Type.UNION) {
+            Schema nonNull = null;
+            for (Schema type : schema.getTypes()) {
+                if (type.getType() != Schema.Type.NULL) {
+                    if (nonNull != null) {
+                        return schema; // Not a plain optional type
+                    }
+                    nonNull = type;
+                }
+            }
+            return (nonNull == null) ? schema : nonNull;
+        }
+
+        return schema;
+    }
+
+    private static int[] append(int[] positions, int pos) {
+        int[] res = new int[positions.length + 1];
+        System.arraycopy(positions, 0, res, 0, positions.length);
+        res[positions.length] = pos;
+        return res;
+    }
+
+    @Value
+    public static class DecodeResult {
+
+        /**
+         * Number of records produced
+         */
+        private final int recordCount;
+
+        /**
+         * True if decoding stopped because the max number of records was reached. The rest of the document is not
+         * read, so this is also the case if the document has no more records.
+         */
+        private final boolean truncated;
+    }
+
+    /**
+     * Reference to a (possibly nested) field in records converted according to a conversion plan
+     */
+    @Value
+    public static class FieldRef {
+        private final String path;
+        private final int[] positions;
+
+        /**
+         * @return the value of the field, or null if the field (or any of its parents) is not set
+         */
+        public Object valueOf(GenericRecord record) {
+            Object value = record;
+            for (int pos : positions) {
+                if (! (value instanceof GenericRecord)) {
+                    return null;
+                }
+                value = ((GenericRecord) value).get(pos);
+            }
+
+            return value;
+        }
+    }
+
+}
@@ -6,6 +6,7 @@ import lombok.Value;
 import org.apache.avro.Schema;
 
 import java.io.Serializable;
+import java.util.Set;
 
 @Value
 @Builder(toBuilder = true)
@@ -48,4 +49,13 @@ public class SchemaAdapter implements Serializable {
     @NonNull
     private final String rootElementName;
 
+    /**
+     * The hendelse.gjelderPeriode values that this schema applies to. Used to route messages to the correct schema
+     * when several schemas share the same rawdata item (see SiriusRawdataConverterConfig#schemaRouting). Empty means
+     * that the schema applies to any period.
+     */
+    @NonNull
+    @Builder.Default
+    private final Set<String> periods = Set.of();
+
 }
@@ -4,6 +4,9 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+import java.util.Set;
+
 /**
  * This allows for overriding properties in a SchemaAdapter
  * TODO: Don't duplicate XmlSchemaAdapter
@@ -21,4 +24,12 @@ public class SchemaDescriptor {
     private String rawdataItemName;
     private String targetItemName;
     private String rootElementName;
+    private Set<String> periods;
+
+    /**
+     * Paths of the fields to include in the converted records (see SchemaProjection), e.g.
+     * <code>skjermet</code> or <code>tidsperiode/start</code>. All fields are included if not set. The skjermet field
+     * is always included, if the schema has one.
+     */
+    private List<String> projection;
 }
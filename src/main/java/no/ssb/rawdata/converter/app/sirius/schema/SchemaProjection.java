@@ -0,0 +1,198 @@
+package no.ssb.rawdata.converter.app.sirius.schema;
+
+import lombok.Value;
+import no.ssb.rawdata.converter.app.sirius.SiriusRawdataConverter.SiriusRawdataConverterException;
+import org.apache.avro.Schema;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Derives a pruned avro schema that only contains a selection of fields.
+ *
+ * <p>Fields are selected by path relative to the root record, e.g. <code>skjermet</code> or
+ * <code>tidsperiode/start</code>. Selecting a record field selects all of its nested fields. Paths continue through
+ * arrays and maps, i.e. the path of a field in an array of records is <code>arrayField/field</code>. Parent records
+ * of selected fields are kept, with only the selected fields.</p>
+ *
+ * <p>Since records are converted according to the schema, elements that are not part of the pruned schema are not
+ * materialized in the converted records.</p>
+ *
+ * <p>A named record can only be defined once in a schema. The projection is therefore rejected if the same record
+ * occurs at several places with different field selections, including if it is kept whole in one place and pruned
+ * in another.</p>
+ */
+public class SchemaProjection {
+
+    private static final String ALL = "*";
+
+    private SchemaProjection() {}
+
+    /**
+     * @param schema the root record schema
+     * @param paths paths of the fields to select
+     * @return a schema with only the selected fields
+     * @throws SchemaProjectionException if any of the paths do not denote a field of the schema
+     */
+    public static Schema project(Schema schema, Collection<String> paths) {
+        Node root = new Node("");
+        paths.forEach(path -> root.add(path.replaceAll("^/+|/+$", "").split("/")));
+
+        Map<String, ProjectedRecord> projectedRecords = new HashMap<>();
+        Schema projected = projectRecord(schema, root, projectedRecords);
+
+        Set<String> unmatched = new TreeSet<>();
+        root.collectUnmatched(unmatched);
+        if (! unmatched.isEmpty()) {
+            throw new SchemaProjectionException("Unknown fields in projection of " + schema.getFullName() + ": " + unmatched);
+        }
+
+        return projected;
+    }
+
+    private static Schema projectRecord(Schema record, Node node, Map<String, ProjectedRecord> projectedRecords) {
+        node.matched = true;
+        if (node.all) {
+            return whole(record, projectedRecords);
+        }
+
+        List<Schema.Field> fields = new ArrayList<>();
+        for (Schema.Field field : record.getFields()) {
+            Node child = node.children.get(field.name());
+            if (child != null) {
+                child.matched = true;
+                fields.add(new Schema.Field(field, projectType(field.schema(), child, projectedRecords)));
+            }
+        }
+
+        // The same named record can occur at several places in a schema, but can only be defined once
+        String signature = node.signature();
+        ProjectedRecord previous = projectedRecords.get(record.getFullName());
+        if (previous != null) {
+            if (! signature.equals(previous.getSignature())) {
+                throw new SchemaProjectionException("Record " + record.getFullName() + " occurs at several places with different field selections");
+            }
+            return previous.getSchema();
+        }
+
+        Schema projected = Schema.createRecord(record.getName(), record.getDoc(), record.getNamespace(), record.isError(), fields);
+        record.getObjectProps().forEach(projected::addProp);
+        record.getAliases().forEach(projected::addAlias);
+        projectedRecords.put(record.getFullName(), new ProjectedRecord(signature, projected));
+        return projected;
+    }
+
+    private static Schema projectType(Schema schema, Node node, Map<String, ProjectedRecord> projectedRecords) {
+        if (node.all) {
+            return whole(schema, projectedRecords);
+        }
+
+        switch (schema.getType()) {
+            case RECORD:
+                return projectRecord(schema, node, projectedRecords);
+            case ARRAY:
+                return Schema.createArray(projectType(schema.getElementType(), node, projectedRecords));
+            case MAP:
+                return Schema.createMap(projectType(schema.getValueType(), node, projectedRecords));
+            case UNION:
+                return Schema.createUnion(schema.getTypes().stream()
+                  .map(type -> projectType(type, node, projectedRecords))
+                  .collect(Collectors.toList()));
+            default:
+                return schema; // Paths beyond a primitive field are reported as unmatched
+        }
+    }
+
+    /**
+     * Keep a schema as is. All records within it are registered as kept whole, so that a record that is kept whole in
+     * one place and projected in another is detected.
+     */
+    private static Schema whole(Schema schema, Map<String, ProjectedRecord> projectedRecords) {
+        switch (schema.getType()) {
+            case RECORD:
+                ProjectedRecord previous = projectedRecords.get(schema.getFullName());
+                if (previous != null) {
+                    if (! ALL.equals(previous.getSignature())) {
+                        throw new SchemaProjectionException("Record " + schema.getFullName() + " occurs at several places with different field selections");
+                    }
+                    return schema; // Already registered, including nested records
+                }
+                projectedRecords.put(schema.getFullName(), new ProjectedRecord(ALL, schema));
+                schema.getFields().forEach(field -> whole(field.schema(), projectedRecords));
+                break;
+            case ARRAY:
+                whole(schema.getElementType(), projectedRecords);
+                break;
+            case MAP:
+                whole(schema.getValueType(), projectedRecords);
+                break;
+            case UNION:
+                schema.getTypes().forEach(type -> whole(type, projectedRecords));
+                break;
+            default:
+                break;
+        }
+        return schema;
+    }
+
+    @Value
+    private static class ProjectedRecord {
+        private final String signature;
+        private final Schema schema;
+    }
+
+    /**
+     * A node in the tree of selected paths
+     */
+    private static class Node {
+        private final String name;
+        private final Map<String, Node> children = new LinkedHashMap<>();
+        private boolean all;
+        private boolean matched;
+
+        Node(String name) {
+            this.name = name;
+        }
+
+        void add(String[] path) {
+            Node node = this;
+            for (String name : path) {
+                node = node.children.computeIfAbsent(name, Node::new);
+            }
+            node.all = true;
+        }
+
+        void collectUnmatched(Set<String> unmatched) {
+            children.values().forEach(child -> {
+                if (! child.matched) {
+                    unmatched.add(child.name);
+                }
+                else if (! child.all) {
+                    Set<String> nested = new TreeSet<>();
+                    child.collectUnmatched(nested);
+                    nested.forEach(path -> unmatched.add(child.name + "/" + path));
+                }
+            });
+        }
+
+        String signature() {
+            return all ? ALL : children.values().stream()
+              .map(child -> child.name + (child.all ? "" : "(" + child.signature() + ")"))
+              .collect(Collectors.joining(","));
+        }
+    }
+
+    public static class SchemaProjectionException extends SiriusRawdataConverterException {
+        public SchemaProjectionException(String msg) {
+            super(msg);
+        }
+    }
+
+}
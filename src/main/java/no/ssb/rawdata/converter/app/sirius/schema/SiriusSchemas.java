@@ -1,71 +1,72 @@
 package no.ssb.rawdata.converter.app.sirius.schema;
 
+import com.google.common.base.Suppliers;
 import no.ssb.rawdata.converter.app.sirius.SiriusRawdataConverter.SiriusRawdataConverterException;
+import org.apache.avro.Schema;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static no.ssb.rawdata.converter.util.AvroSchemaUtil.readAvroSchema;
 
 public class SiriusSchemas {
 
-    private static final Set<SchemaAdapter> SCHEMAS;
+    /**
+     * Known schemas, keyed by lower case schema name. Avro schemas are parsed on first use only, and then memoized.
+     */
+    private static final Map<String, Supplier<SchemaAdapter>> SCHEMAS = new HashMap<>();
+
+    private static final ConcurrentMap<String, Schema> PROJECTED_SCHEMAS = new ConcurrentHashMap<>();
+
+    private static final String FIELDNAME_SKJERMET = "skjermet";
 
     static {
-        SCHEMAS = Set.of(
-          SchemaAdapter.builder()
-            .schemaName("sirius-hendelse-v1_3")
-            .schema(readAvroSchema("schema/sirius-hendelse-v1_3.avsc"))
-            .rawdataItemName("entry")
-            .targetItemName("hendelse")
-            .rootElementName("hendelse")
-            .build(),
-          SchemaAdapter.builder()
-            .schemaName("sirius-skattemelding-utflatet-2018-v0_22")
-            .schema(readAvroSchema("schema/sirius-skattemelding-utflatet-2018-v0_22.avsc"))
-            .rawdataItemName("skattemelding")
-            .targetItemName("skattemeldingUtflatet")
-            .rootElementName("skattemeldingUtflatet")
-            .build(),
-          SchemaAdapter.builder()
-            .schemaName("sirius-skattemelding-utflatet-2019-v1_0_1")
-            .schema(readAvroSchema("schema/sirius-skattemelding-utflatet-2019-v1_0_1.avsc"))
-            .rawdataItemName("skattemelding")
-            .targetItemName("skattemeldingUtflatet")
-            .rootElementName("skattemeldingUtflatet")
-            .build(),
-          SchemaAdapter.builder()
-            .schemaName("sirius-skattemelding-utflatet-2019-v1_2")
-            .schema(readAvroSchema("schema/sirius-skattemelding-utflatet-2019-v1_2.avsc"))
-            .rawdataItemName("skattemelding")
-            .targetItemName("skattemeldingUtflatet")
-            .rootElementName("skattemeldingUtflatet")
-            .build(),
-          SchemaAdapter.builder()
-            .schemaName("sirius-skattemelding-2020-v8_0")
-            .schema(readAvroSchema("schema/sirius-skattemelding-2020-v8_0.avsc"))
-            .rawdataItemName("skattemelding")
-            .targetItemName("skattemelding")
-            .rootElementName("skattemelding")
-            .build(),
-          SchemaAdapter.builder()
-            .schemaName("sirius-skattemelding-utflatet-2020-v8_0")
-            .schema(readAvroSchema("schema/sirius-skattemelding-utflatet-2020-v8_0.avsc"))
-            .rawdataItemName("skattemelding")
-            .targetItemName("skattemelding")
-            .rootElementName("skattemelding")
-            .build()
-        );
+        register("sirius-hendelse-v1_3", "entry", "hendelse", "hendelse");
+        register("sirius-skattemelding-utflatet-2018-v0_22", "skattemelding", "skattemeldingUtflatet", "skattemeldingUtflatet");
+        register("sirius-skattemelding-utflatet-2019-v1_0_1", "skattemelding", "skattemeldingUtflatet", "skattemeldingUtflatet");
+        register("sirius-skattemelding-utflatet-2019-v1_2", "skattemelding", "skattemeldingUtflatet", "skattemeldingUtflatet");
+        register("sirius-skattemelding-2020-v8_0", "skattemelding", "skattemelding", "skattemelding");
+        register("sirius-skattemelding-utflatet-2020-v8_0", "skattemelding", "skattemelding", "skattemelding");
+    }
+
+    private static void register(String schemaName, String rawdataItemName, String targetItemName, String rootElementName) {
+        SCHEMAS.put(key(schemaName), Suppliers.memoize(() -> SchemaAdapter.builder()
+          .schemaName(schemaName)
+          .schema(readAvroSchema("schema/" + schemaName + ".avsc"))
+          .rawdataItemName(rawdataItemName)
+          .targetItemName(targetItemName)
+          .rootElementName(rootElementName)
+          .build()
+        ));
+    }
+
+    /**
+     * @return names of all known schemas
+     */
+    public static Set<String> schemaNames() {
+        return Collections.unmodifiableSet(SCHEMAS.keySet());
     }
 
     public static SchemaAdapter getBySchemaDescriptor(SchemaDescriptor schemaSource) {
-        SchemaAdapter schemaAdapter = SCHEMAS.stream()
-          .filter(schema -> schema.getSchemaName().equalsIgnoreCase(schemaSource.getSchemaName()))
-          .findFirst()
-          .orElseThrow(() ->
-            new SchemaNotFoundException("No schema found for " + schemaSource.getSchemaName()));
-        schemaAdapter = merge(schemaAdapter, schemaSource);
-
-        return schemaAdapter;
+        Supplier<SchemaAdapter> schemaSupplier = (schemaSource.getSchemaName() == null) ? null : SCHEMAS.get(key(schemaSource.getSchemaName()));
+        if (schemaSupplier == null) {
+            throw new SchemaNotFoundException("No schema found for " + schemaSource.getSchemaName());
+        }
+
+        return merge(schemaSupplier.get(), schemaSource);
+    }
+
+    private static String key(String schemaName) {
+        return schemaName.toLowerCase(Locale.ROOT);
     }
 
     private static SchemaAdapter merge(SchemaAdapter schemaAdapter, SchemaDescriptor overrides) {
@@ -82,10 +83,29 @@ public class SiriusSchemas {
         if (overrides.getRootElementName() != null) {
             builder.rootElementName(overrides.getRootElementName());
         }
+        if (overrides.getPeriods() != null) {
+            builder.periods(Set.copyOf(overrides.getPeriods()));
+        }
+        if (overrides.getProjection() != null && ! overrides.getProjection().isEmpty()) {
+            builder.schema(projectedSchemaOf(schemaAdapter, overrides.getProjection()));
+        }
 
         return builder.build();
     }
 
+    /**
+     * Projected schemas are memoized, so that data elements with the same projection share the same schema instance.
+     * The skjermet field is always kept, since screened records are identified by it (see SkjermetHandling).
+     */
+    private static Schema projectedSchemaOf(SchemaAdapter schemaAdapter, List<String> projection) {
+        List<String> paths = Stream.concat(projection.stream(),
+            (schemaAdapter.getSchema().getField(FIELDNAME_SKJERMET) == null) ? Stream.empty() : Stream.of(FIELDNAME_SKJERMET))
+          .sorted().distinct().collect(Collectors.toList());
+        return PROJECTED_SCHEMAS.computeIfAbsent(key(schemaAdapter.getSchemaName()) + "|" + String.join(",", paths), k ->
+          SchemaProjection.project(schemaAdapter.getSchema(), paths)
+        );
+    }
+
     public static class SchemaNotFoundException extends SiriusRawdataConverterException {
         public SchemaNotFoundException(String msg) {
             super(msg);
@@ -0,0 +1,98 @@
+package no.ssb.rawdata.converter.app.sirius.schema;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import no.ssb.rawdata.converter.app.sirius.SiriusRawdataConverter.SiriusRawdataConverterException;
+import org.apache.avro.Schema;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide, bounded cache of aggregate (manifest and target) avro schemas.
+ *
+ * <p>Converters of concurrent jobs with the same data elements, topic and data collector manifest share the same
+ * schema instances instead of each building their own. Schemas are always built from the in-memory schemas of
+ * SiriusSchemas, so that they share sub-schema instances with all other converters of the process.</p>
+ */
+public class TargetSchemaCache {
+
+    static final long DEFAULT_MAX_SIZE = 256;
+
+    private static final TargetSchemaCache SHARED = new TargetSchemaCache(DEFAULT_MAX_SIZE);
+
+    /**
+     * Fingerprints by schema instance. Schemas are immutable, and SiriusSchemas memoizes its schemas, so the
+     * fingerprint of a schema is only computed once.
+     */
+    private static final Cache<Schema, String> FINGERPRINTS = CacheBuilder.newBuilder()
+      .weakKeys()
+      .build();
+
+    private final Cache<String, Schema> schemas;
+
+    public TargetSchemaCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize max number of schemas to keep. Least recently used schemas are evicted beyond this.
+     */
+    public TargetSchemaCache(long maxSize) {
+        this.schemas = CacheBuilder.newBuilder()
+          .maximumSize(maxSize)
+          .build();
+    }
+
+    /**
+     * @return the cache shared by all converters of the process
+     */
+    public static TargetSchemaCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param key uniquely identifies the schema, i.e. everything that the schema is built from
+     * @param schemaBuilder builds the schema if it is not cached
+     */
+    public Schema get(String key, Supplier<Schema> schemaBuilder) {
+        try {
+            return schemas.get(key, schemaBuilder::get);
+        }
+        catch (ExecutionException | UncheckedExecutionException e) {
+            throw (e.getCause() instanceof RuntimeException)
+              ? (RuntimeException) e.getCause()
+              : new SiriusRawdataConverterException("Error building schema " + key, e.getCause());
+        }
+    }
+
+    /**
+     * @return a fingerprint of a schema, including all properties, for use in cache keys. This is computed once per
+     * schema instance.
+     */
+    public static String fingerprintOf(Schema schema) {
+        try {
+            return FINGERPRINTS.get(schema, () -> fingerprintOf(schema.toString()));
+        }
+        catch (ExecutionException | UncheckedExecutionException e) {
+            throw new SiriusRawdataConverterException("Error computing fingerprint of schema " + schema.getFullName(), e.getCause());
+        }
+    }
+
+    private static String fingerprintOf(String s) {
+        return Hashing.sha256().hashString(s, StandardCharsets.UTF_8).toString();
+    }
+
+    long size() {
+        schemas.cleanUp();
+        return schemas.size();
+    }
+
+    void clear() {
+        schemas.invalidateAll();
+    }
+
+}
@@ -0,0 +1,156 @@
+package no.ssb.rawdata.converter.app.sirius.xml;
+
+import no.ssb.rawdata.converter.app.sirius.SiriusRawdataConverter.SiriusRawdataConverterException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Cheap, streaming (StAX) lookups of values found in the head of an XML document.
+ *
+ * <p>As opposed to e.g. {@link no.ssb.rawdata.converter.util.Xml#toGenericMap(String)}, the document is only read
+ * until the requested element is found. No intermediate representation of the document is being built.</p>
+ */
+public class XmlHeaderReader {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = newXmlInputFactory();
+
+    private XmlHeaderReader() {}
+
+    /**
+     * Find the text value of a direct child element of the document root.
+     *
+     * @param xml the xml document
+     * @param localName local name (without namespace prefix) of the child element to look for
+     * @return the trimmed text value of the first matching child element, or empty if no such element exists
+     * @throws XmlHeaderReaderException if the document could not be parsed
+     */
+    public static Optional<String> childElementValue(byte[] xml, String localName) {
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(xml));
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (depth == 2 && localName.equals(reader.getLocalName())) {
+                        return Optional.of(reader.getElementText().trim());
+                    }
+                }
+                else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+
+            return Optional.empty();
+        }
+        catch (XMLStreamException e) {
+            throw new XmlHeaderReaderException("Error reading xml element " + localName, e);
+        }
+        finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Find the text values of several direct child elements of the document root, in a single pass. The document is
+     * only read until all elements have been found.
+     *
+     * @param xml the xml document
+     * @param localNames local names (without namespace prefix) of the child elements to look for
+     * @return the trimmed text value of the first matching child element, keyed by local name. Elements that do not
+     * exist are not included.
+     * @throws XmlHeaderReaderException if the document could not be parsed
+     */
+    public static Map<String, String> childElementValues(byte[] xml, Set<String> localNames) {
+        Map<String, String> values = new HashMap<>(localNames.size() * 2);
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(xml));
+            int depth = 0;
+            while (reader.hasNext() && values.size() < localNames.size()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    String localName = reader.getLocalName();
+                    if (depth == 2 && localNames.contains(localName) && ! values.containsKey(localName)) {
+                        values.put(localName, reader.getElementText().trim());
+                        depth--; // getElementText() consumes the end element
+                    }
+                }
+                else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+
+            return values;
+        }
+        catch (XMLStreamException e) {
+            throw new XmlHeaderReaderException("Error reading xml elements " + localNames, e);
+        }
+        finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Find the namespace of the document root element.
+     *
+     * @param xml the xml document
+     * @return the namespace URI of the root element, or empty if the root element is not namespaced
+     * @throws XmlHeaderReaderException if the document could not be parsed
+     */
+    public static Optional<String> rootElementNamespace(byte[] xml) {
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(xml));
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    String namespace = reader.getNamespaceURI();
+                    return (namespace == null || namespace.isEmpty()) ? Optional.empty() : Optional.of(namespace);
+                }
+            }
+
+            return Optional.empty();
+        }
+        catch (XMLStreamException e) {
+            throw new XmlHeaderReaderException("Error reading xml root element", e);
+        }
+        finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private static void closeQuietly(XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            }
+            catch (XMLStreamException e) {
+                // Ignore
+            }
+        }
+    }
+
+    private static XMLInputFactory newXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    public static class XmlHeaderReaderException extends SiriusRawdataConverterException {
+        public XmlHeaderReaderException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import no.ssb.rawdata.converter.app.sirius.DeadLetterWriter.DeadLetter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class DeadLetterWriterTest {
+
+    private static DeadLetter deadLetter(String position) {
+        return DeadLetter.builder()
+          .position(position)
+          .id("01EHX0DN9TQGQ7G0W0Y0V7XW1D")
+          .rawdataItemName("skattemelding")
+          .schemaName("sirius-skattemelding-utflatet-2019-v1_2")
+          .error("Error converting sirius skattemelding data")
+          .build();
+    }
+
+    private static List<Path> deadLetterFiles(Path dir) throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void write_shouldAppendJsonLinesInBatches(@TempDir Path dir) throws Exception {
+        DeadLetterWriter writer = new DeadLetterWriter(dir, 1024 * 1024, 2, 0);
+        writer.write(deadLetter("1"));
+        Assertions.assertTrue(deadLetterFiles(dir).isEmpty());
+
+        writer.write(deadLetter("2"));
+        writer.write(deadLetter("3"));
+        writer.close();
+
+        List<Path> files = deadLetterFiles(dir);
+        Assertions.assertEquals(1, files.size());
+        List<String> lines = Files.readAllLines(files.get(0));
+        Assertions.assertEquals(3, lines.size());
+        Assertions.assertTrue(lines.get(0).contains("\"position\":\"1\""));
+        Assertions.assertTrue(lines.get(0).contains("\"schemaName\":\"sirius-skattemelding-utflatet-2019-v1_2\""));
+    }
+
+    @Test
+    void write_exceedingMaxFileSize_shouldRollToNewFile(@TempDir Path dir) throws Exception {
+        DeadLetterWriter writer = new DeadLetterWriter(dir, 1, 1, 0);
+        writer.write(deadLetter("1"));
+        writer.write(deadLetter("2"));
+        writer.close();
+
+        Assertions.assertEquals(2, deadLetterFiles(dir).size());
+    }
+
+}
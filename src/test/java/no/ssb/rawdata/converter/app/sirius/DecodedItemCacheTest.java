@@ -0,0 +1,75 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import de.huxhorn.sulky.ulid.ULID;
+import no.ssb.rawdata.api.RawdataMessage;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+public class DecodedItemCacheTest {
+
+    private static final List<GenericRecord> RECORDS = List.of(new GenericData.Record(
+      SchemaBuilder.record("test").fields().optionalString("value").endRecord()));
+
+    private static RawdataMessage message(String position, String entry) {
+        return RawdataMessage.builder()
+          .ulid(new ULID().nextValue())
+          .orderingGroup("test")
+          .sequenceNumber(1)
+          .position(position)
+          .put("entry", entry.getBytes(StandardCharsets.UTF_8))
+          .build();
+    }
+
+    @Test
+    void take_samePositionAndPayload_shouldReturnRecordsOnce() {
+        DecodedItemCache<List<GenericRecord>> cache = new DecodedItemCache<>();
+        RawdataMessage msg = message("1", "<hendelse/>");
+        cache.put(msg, "entry", RECORDS);
+
+        Assertions.assertSame(RECORDS, cache.take(msg, "entry").orElseThrow());
+        Assertions.assertEquals(Optional.empty(), cache.take(msg, "entry"));
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    void take_otherItemName_shouldReturnEmpty() {
+        DecodedItemCache<List<GenericRecord>> cache = new DecodedItemCache<>();
+        RawdataMessage msg = message("1", "<hendelse/>");
+        cache.put(msg, "entry", RECORDS);
+
+        Assertions.assertEquals(Optional.empty(), cache.take(msg, "skattemelding"));
+    }
+
+    @Test
+    void take_samePositionOtherPayload_shouldReturnEmpty() {
+        DecodedItemCache<List<GenericRecord>> cache = new DecodedItemCache<>();
+        cache.put(message("1", "<hendelse/>"), "entry", RECORDS);
+
+        // Same position and content, but another payload instance (e.g. a redelivered message)
+        Assertions.assertEquals(Optional.empty(), cache.take(message("1", "<hendelse/>"), "entry"));
+    }
+
+    @Test
+    void put_beyondCapacity_shouldEvictEldestEntries() {
+        DecodedItemCache<List<GenericRecord>> cache = new DecodedItemCache<>(2);
+        RawdataMessage first = message("1", "<hendelse/>");
+        RawdataMessage second = message("2", "<hendelse/>");
+        RawdataMessage third = message("3", "<hendelse/>");
+        cache.put(first, "entry", RECORDS);
+        cache.put(second, "entry", RECORDS);
+        cache.put(third, "entry", RECORDS);
+
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertEquals(Optional.empty(), cache.take(first, "entry"));
+        Assertions.assertTrue(cache.take(second, "entry").isPresent());
+        Assertions.assertTrue(cache.take(third, "entry").isPresent());
+    }
+
+}
@@ -0,0 +1,65 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import de.huxhorn.sulky.ulid.ULID;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+public class DedupIndexTest {
+
+    @Test
+    void offer_shouldOnlyAcceptHigherSekvensnummer() {
+        DedupIndex index = new DedupIndex();
+        long key = DedupIndex.keyOf("01010112345", "2019");
+
+        Assertions.assertTrue(index.offer(key, 10));
+        Assertions.assertFalse(index.offer(key, 10));
+        Assertions.assertFalse(index.offer(key, 9));
+        Assertions.assertTrue(index.offer(key, 11));
+        Assertions.assertTrue(index.offer(DedupIndex.keyOf("01010112345", "2020"), 1));
+        Assertions.assertEquals(2, index.size());
+    }
+
+    @Test
+    void offer_manyKeys_shouldResize() {
+        DedupIndex index = new DedupIndex();
+        for (long key = 1; key <= 10_000; key++) {
+            Assertions.assertTrue(index.offer(key, key));
+        }
+
+        Assertions.assertEquals(10_000, index.size());
+        Assertions.assertEquals(5000L, index.get(5000));
+        Assertions.assertNull(index.get(10_001));
+    }
+
+    @Test
+    void checkpoint_shouldBeRestorable(@TempDir Path dir) {
+        Path checkpoint = dir.resolve("dedup.idx");
+        DedupIndex index = new DedupIndex();
+        index.offer(0, 1);
+        index.offer(42, 7);
+        index.checkpoint(checkpoint);
+
+        DedupIndex restored = DedupIndex.restore(checkpoint);
+        Assertions.assertEquals(2, restored.size());
+        Assertions.assertEquals(7L, restored.get(42));
+        Assertions.assertFalse(restored.offer(0, 1));
+    }
+
+    @Test
+    void checkpoint_shouldRestorePosition(@TempDir Path dir) {
+        Path checkpoint = dir.resolve("dedup.idx");
+        DedupIndex index = new DedupIndex();
+        index.offer(42, 7, new ULID.Value(0, 2));
+        index.offer(43, 1, new ULID.Value(0, 1));
+        index.checkpoint(checkpoint);
+
+        DedupIndex restored = DedupIndex.restore(checkpoint);
+        Assertions.assertEquals(new ULID.Value(0, 2), restored.getRestoredPosition());
+        Assertions.assertEquals(7L, restored.get(42));
+        Assertions.assertNull(new DedupIndex().getRestoredPosition());
+    }
+
+}
@@ -0,0 +1,42 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PseudoCacheTest {
+
+    @Test
+    void get_sameFieldAndValue_shouldOnlyPseudonymizeOnce() {
+        PseudoCache cache = new PseudoCache(100, 0);
+        AtomicInteger invocations = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals("pseudo", cache.get("/hendelse/identifikator", "01010112345", () -> {
+                invocations.incrementAndGet();
+                return "pseudo";
+            }));
+        }
+
+        Assertions.assertEquals(1, invocations.get());
+        Assertions.assertEquals(2, cache.getCache().stats().hitCount());
+    }
+
+    @Test
+    void get_differentFieldPaths_shouldBeCachedSeparately() {
+        PseudoCache cache = new PseudoCache(100, 0);
+
+        Assertions.assertEquals("a", cache.get("/a", "value", () -> "a"));
+        Assertions.assertEquals("b", cache.get("/b", "value", () -> "b"));
+    }
+
+    @Test
+    void get_nullValue_shouldNotBeCached() {
+        PseudoCache cache = new PseudoCache(100, 0);
+
+        Assertions.assertNull(cache.get("/a", null, () -> null));
+        Assertions.assertEquals(0, cache.getCache().size());
+    }
+
+}
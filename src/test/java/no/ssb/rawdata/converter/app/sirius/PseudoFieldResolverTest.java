@@ -0,0 +1,33 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import no.ssb.rawdata.converter.app.sirius.schema.SchemaAdapter;
+import no.ssb.rawdata.converter.app.sirius.schema.SchemaDescriptor;
+import no.ssb.rawdata.converter.app.sirius.schema.SiriusSchemas;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+public class PseudoFieldResolverTest {
+
+    private static final SchemaAdapter HENDELSE = SiriusSchemas.getBySchemaDescriptor(new SchemaDescriptor("sirius-hendelse-v1_3"));
+
+    @Test
+    void matchingFieldNames_shouldOnlyIncludeMatchingFields() {
+        Assertions.assertEquals(Set.of("identifikator"),
+          PseudoFieldResolver.matchingFieldNames(HENDELSE, List.of("**/{identifikator,foedselsEllerDNummer}")));
+    }
+
+    @Test
+    void matchingFieldNames_patternWithRootElement_shouldMatch() {
+        Assertions.assertEquals(Set.of("identifikator"),
+          PseudoFieldResolver.matchingFieldNames(HENDELSE, List.of("/hendelse/identifikator")));
+    }
+
+    @Test
+    void matchingFieldNames_noMatchingFields_shouldBeEmpty() {
+        Assertions.assertTrue(PseudoFieldResolver.matchingFieldNames(HENDELSE, List.of("**/{navn}")).isEmpty());
+    }
+
+}
@@ -0,0 +1,54 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import de.huxhorn.sulky.ulid.ULID;
+import no.ssb.rawdata.api.RawdataMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class RequiredItemsTest {
+
+    private static RawdataMessage messageWithItems(String... itemNames) {
+        var builder = RawdataMessage.builder()
+          .ulid(new ULID().nextValue())
+          .orderingGroup("test")
+          .sequenceNumber(1)
+          .position("1");
+        for (String itemName : itemNames) {
+            builder.put(itemName, new byte[0]);
+        }
+        return builder.build();
+    }
+
+    @Test
+    void missing_allItemsPresent_shouldReturnZero() {
+        RequiredItems requiredItems = new RequiredItems(Set.of("entry", "skattemelding"), Duration.ofMinutes(1));
+        Assertions.assertEquals(0, requiredItems.missing(messageWithItems("entry", "skattemelding", "manifest.json")));
+    }
+
+    @Test
+    void missing_someItemsAbsent_shouldReportMissingItems() {
+        RequiredItems requiredItems = new RequiredItems(Set.of("entry", "skattemelding"), Duration.ofMinutes(1));
+        long missing = requiredItems.missing(messageWithItems("entry"));
+
+        Assertions.assertEquals(List.of("skattemelding"), requiredItems.itemNamesOf(missing));
+    }
+
+    @Test
+    void recordMiss_shouldAggregateMissesUntilNextReport() {
+        RequiredItems requiredItems = new RequiredItems(Set.of("entry", "skattemelding"), Duration.ofHours(1));
+        long missing = requiredItems.missing(messageWithItems());
+
+        Assertions.assertTrue(requiredItems.recordMiss(missing));
+        Assertions.assertEquals(Map.of("entry", 1L, "skattemelding", 1L), requiredItems.drainMissCounts());
+
+        Assertions.assertFalse(requiredItems.recordMiss(missing));
+        Assertions.assertFalse(requiredItems.recordMiss(missing));
+        Assertions.assertEquals(Map.of("entry", 2L, "skattemelding", 2L), requiredItems.drainMissCounts());
+    }
+
+}
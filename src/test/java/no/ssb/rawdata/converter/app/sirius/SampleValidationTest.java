@@ -0,0 +1,66 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import no.ssb.rawdata.converter.app.sirius.schema.SchemaDescriptor;
+import no.ssb.rawdata.converter.app.sirius.schema.SiriusSchemas;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.util.Utf8;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class SampleValidationTest {
+
+    private static final XmlConversionPlan HENDELSE_PLAN = XmlConversionPlan.compile(
+      SiriusSchemas.getBySchemaDescriptor(new SchemaDescriptor("sirius-hendelse-v1_3")));
+    private static final XmlConversionPlan SKATTEMELDING_PLAN = XmlConversionPlan.compile(
+      SiriusSchemas.getBySchemaDescriptor(new SchemaDescriptor("sirius-skattemelding-2020-v8_0")));
+
+    private static GenericRecord hendelse(String gjelderPeriode) {
+        GenericRecord record = new GenericData.Record(HENDELSE_PLAN.getSchemaAdapter().getSchema());
+        record.put("gjelderPeriode", new Utf8(gjelderPeriode));
+        return record;
+    }
+
+    @Test
+    void incompatibleSchemaNames_noSampleConverted_shouldReportSchema() {
+        SampleValidation validation = new SampleValidation(List.of(HENDELSE_PLAN, SKATTEMELDING_PLAN));
+        validation.converted(HENDELSE_PLAN, List.of(hendelse("2019")), 1_000);
+        validation.failed(SKATTEMELDING_PLAN, new IllegalStateException("Unexpected element"), 1_000);
+        validation.converted(SKATTEMELDING_PLAN, List.of(), 1_000);
+
+        Assertions.assertEquals(List.of("sirius-skattemelding-2020-v8_0"), validation.incompatibleSchemaNames());
+    }
+
+    @Test
+    void incompatibleSchemaNames_someSamplesConverted_shouldNotReportSchema() {
+        SampleValidation validation = new SampleValidation(List.of(HENDELSE_PLAN));
+        validation.failed(HENDELSE_PLAN, new IllegalStateException("Corrupt sample"), 1_000);
+        validation.converted(HENDELSE_PLAN, List.of(hendelse("2019")), 1_000);
+
+        Assertions.assertEquals(List.of(), validation.incompatibleSchemaNames());
+    }
+
+    @Test
+    void incompatibleSchemaNames_noSamples_shouldNotReportSchema() {
+        SampleValidation validation = new SampleValidation(List.of(HENDELSE_PLAN, SKATTEMELDING_PLAN));
+        validation.converted(HENDELSE_PLAN, List.of(hendelse("2019")), 1_000);
+
+        Assertions.assertEquals(List.of(), validation.incompatibleSchemaNames());
+    }
+
+    @Test
+    void fieldCoverage_shouldCountFieldsSetInAnyRecord() {
+        SampleValidation validation = new SampleValidation(List.of(HENDELSE_PLAN));
+        GenericRecord record = hendelse("2019");
+        record.put("sekvensnummer", 42L);
+        validation.converted(HENDELSE_PLAN, List.of(hendelse("2019"), record), 1_000);
+
+        int fieldCount = HENDELSE_PLAN.getFieldsByPath().size();
+        Assertions.assertEquals(2.0 / fieldCount, validation.fieldCoverage(HENDELSE_PLAN), 1e-9);
+        Assertions.assertFalse(validation.uncoveredFields(HENDELSE_PLAN).contains("gjelderPeriode"));
+        Assertions.assertTrue(validation.uncoveredFields(HENDELSE_PLAN).contains("hendelsetype"));
+    }
+
+}
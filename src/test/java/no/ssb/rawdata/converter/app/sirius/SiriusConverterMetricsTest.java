@@ -0,0 +1,81 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import no.ssb.rawdata.converter.app.sirius.SiriusConverterMetrics.SkipReason;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class SiriusConverterMetricsTest {
+
+    private static double skipped(SimpleMeterRegistry registry, String jobName) {
+        return registry.get(SiriusConverterMetrics.PREFIX + "skipped")
+          .tag("reason", "stale")
+          .tag(SiriusConverterMetrics.TAG_JOB, jobName)
+          .counter().count();
+    }
+
+    @Test
+    void skipped_jobsSharingRegistry_shouldReportSeparately() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SiriusConverterMetrics job1 = new SiriusConverterMetrics(registry, "job1");
+        SiriusConverterMetrics job2 = new SiriusConverterMetrics(registry, "job2");
+
+        job1.skipped(SkipReason.STALE);
+        job1.skipped(SkipReason.STALE);
+        job2.skipped(SkipReason.STALE);
+
+        Assertions.assertEquals(2, skipped(registry, "job1"));
+        Assertions.assertEquals(1, skipped(registry, "job2"));
+    }
+
+    @Test
+    void monitor_pseudoCachesOfSeveralJobs_shouldBeBoundPerJob() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PseudoCache cache1 = new PseudoCache(100, 0);
+        PseudoCache cache2 = new PseudoCache(100, 0);
+        new SiriusConverterMetrics(registry, "job1").monitor(cache1);
+        new SiriusConverterMetrics(registry, "job2").monitor(cache2);
+
+        cache2.get("/fnr", "01010112345", () -> "pseudo");
+
+        Assertions.assertEquals(0, cacheSize(registry, "job1"));
+        Assertions.assertEquals(1, cacheSize(registry, "job2"));
+    }
+
+    private static double cacheSize(SimpleMeterRegistry registry, String jobName) {
+        return registry.get("cache.size")
+          .tag("cache", SiriusConverterMetrics.PREFIX + "pseudo.cache")
+          .tag(SiriusConverterMetrics.TAG_JOB, jobName)
+          .gauge().value();
+    }
+
+    @Test
+    void monitor_workerPoolsOfSeveralJobs_shouldBeBoundPerJob() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ThreadPoolExecutor pool1 = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        ThreadPoolExecutor pool2 = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        try {
+            new SiriusConverterMetrics(registry, "job1").monitor(pool1);
+            new SiriusConverterMetrics(registry, "job2").monitor(pool2);
+            pool2.prestartAllCoreThreads();
+
+            Assertions.assertEquals(0, workers(registry, "job1"));
+            Assertions.assertEquals(2, workers(registry, "job2"));
+        }
+        finally {
+            pool1.shutdown();
+            pool2.shutdown();
+        }
+    }
+
+    private static double workers(SimpleMeterRegistry registry, String jobName) {
+        return registry.get(SiriusConverterMetrics.PREFIX + "workers")
+          .tag(SiriusConverterMetrics.TAG_JOB, jobName)
+          .gauge().value();
+    }
+
+}
@@ -0,0 +1,146 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import no.ssb.rawdata.api.RawdataMessage;
+import no.ssb.rawdata.converter.core.convert.ValueInterceptorChain;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static no.ssb.rawdata.converter.app.sirius.TestMessages.HENDELSE_SCHEMA;
+import static no.ssb.rawdata.converter.app.sirius.TestMessages.config;
+import static no.ssb.rawdata.converter.app.sirius.TestMessages.hendelse;
+import static no.ssb.rawdata.converter.app.sirius.TestMessages.hendelseElement;
+import static no.ssb.rawdata.converter.app.sirius.TestMessages.hendelseXml;
+import static no.ssb.rawdata.converter.app.sirius.TestMessages.message;
+
+/**
+ * Converter-level tests of data element conversion. The manifest is left out, since it requires the converter to be
+ * initialized with a DC manifest.
+ */
+public class SiriusRawdataConverterConversionTest {
+
+    private static List<String> targetItemsOf(SiriusRawdataConverter converter, RawdataMessage msg, boolean parallel) {
+        List<String> targetItems = new ArrayList<>();
+        converter.convertDataElements(msg, (targetItem, record) -> targetItems.add(targetItem), parallel);
+        return targetItems;
+    }
+
+    @Test
+    void convert_afterIsConvertible_shouldReuseDecodedHendelse() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SiriusRawdataConverter converter = new SiriusRawdataConverter(config("2019", HENDELSE_SCHEMA), new ValueInterceptorChain(),
+          new SiriusConverterMetrics(registry));
+        RawdataMessage msg = hendelse("2019");
+
+        Assertions.assertTrue(converter.isConvertible(msg));
+        List<GenericRecord> records = new ArrayList<>();
+        converter.convertDataElements(msg, (targetItem, record) -> records.add(record), false);
+
+        Assertions.assertEquals(1, records.size());
+        Assertions.assertEquals("2019", String.valueOf(records.get(0).get("gjelderPeriode")));
+        Assertions.assertEquals(1, registry.find(SiriusConverterMetrics.PREFIX + "convertxml").timer().count(),
+          "hendelse should only be decoded once");
+        Assertions.assertEquals(1, decodedItemCacheLookups(registry, "hit"));
+        Assertions.assertEquals(0, decodedItemCacheLookups(registry, "miss"));
+    }
+
+    @Test
+    void convert_beyondDecodedItemCacheSize_shouldDecodeHendelseAgain() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SiriusRawdataConverterConfig config = config("2019", HENDELSE_SCHEMA);
+        config.setDecodedItemCacheSize(1);
+        SiriusRawdataConverter converter = new SiriusRawdataConverter(config, new ValueInterceptorChain(), new SiriusConverterMetrics(registry));
+        RawdataMessage first = message(1, "entry", hendelseXml("1", 1, "2019"));
+        RawdataMessage second = message(2, "entry", hendelseXml("2", 1, "2019"));
+
+        // Evaluating two messages ahead of converting them evicts the first one
+        Assertions.assertTrue(converter.isConvertible(first));
+        Assertions.assertTrue(converter.isConvertible(second));
+        targetItemsOf(converter, first, false);
+        targetItemsOf(converter, second, false);
+
+        Assertions.assertEquals(1, decodedItemCacheLookups(registry, "hit"));
+        Assertions.assertEquals(1, decodedItemCacheLookups(registry, "miss"));
+    }
+
+    private static double decodedItemCacheLookups(SimpleMeterRegistry registry, String result) {
+        return registry.get(SiriusConverterMetrics.PREFIX + "decoded.cache").tag("result", result).counter().count();
+    }
+
+    @Test
+    void convert_withoutIsConvertible_shouldDecodeHendelse() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SiriusRawdataConverter converter = new SiriusRawdataConverter(config("2019", HENDELSE_SCHEMA), new ValueInterceptorChain(),
+          new SiriusConverterMetrics(registry));
+
+        Assertions.assertEquals(List.of("hendelse"), targetItemsOf(converter, hendelse("2019"), false));
+        Assertions.assertEquals(1, registry.find(SiriusConverterMetrics.PREFIX + "convertxml").timer().count());
+    }
+
+    private static SiriusRawdataConverterConfig parallelConfig(String... targetItems) {
+        SiriusRawdataConverterConfig config = config("2019");
+        for (int i = 0; i < targetItems.length; i++) {
+            config.getDataElements().add(hendelseElement("entry" + i, targetItems[i]));
+        }
+        config.setParallelConversion(true);
+        config.setParallelism(4);
+        return config;
+    }
+
+    @Test
+    void convertDataElements_parallel_shouldProduceRecordsInDeterministicOrder() {
+        SiriusRawdataConverter converter = new SiriusRawdataConverter(parallelConfig("c", "a", "d", "b"), new ValueInterceptorChain());
+        RawdataMessage msg = message(1,
+          "entry0", hendelseXml("1", 1, "2019"),
+          "entry1", hendelseXml("2", 1, "2019"),
+          "entry2", hendelseXml("3", 1, "2019"),
+          "entry3", hendelseXml("4", 1, "2019"));
+
+        List<String> sequential = targetItemsOf(converter, msg, false);
+        Assertions.assertEquals(List.of("a", "b", "c", "d"), sequential);
+        for (int i = 0; i < 50; i++) {
+            Assertions.assertEquals(sequential, targetItemsOf(converter, msg, true));
+        }
+    }
+
+    @Test
+    void convert_oversizedItem_shouldBeWrittenAsDeadLetterOnClose(@TempDir Path dir) throws Exception {
+        SiriusRawdataConverterConfig config = config("2019", HENDELSE_SCHEMA);
+        config.setMaxItemSizeBytes(10);
+        config.setDeadLetterDir(dir.toString());
+        config.setDeadLetterBatchSize(100);
+        SiriusRawdataConverter converter = new SiriusRawdataConverter(config, new ValueInterceptorChain());
+        String xml = hendelseXml("1", 1, "2019");
+
+        Assertions.assertEquals(List.of(), targetItemsOf(converter, message(1, "entry", xml), false));
+        converter.close();
+
+        List<String> lines;
+        try (Stream<Path> files = Files.list(dir)) {
+            lines = files.flatMap(file -> {
+                try {
+                    return Files.readAllLines(file).stream();
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).collect(Collectors.toList());
+        }
+        Assertions.assertEquals(1, lines.size());
+        Assertions.assertTrue(lines.get(0).contains("\"reason\":\"OVERSIZED\""));
+        Assertions.assertTrue(lines.get(0).contains("\"rawdataItemName\":\"entry\""));
+        Assertions.assertFalse(lines.get(0).contains("\"payload\""), "Dead letters should not include the (unpseudonymized) rawdata item");
+    }
+
+}
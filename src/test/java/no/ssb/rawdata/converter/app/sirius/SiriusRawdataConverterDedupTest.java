@@ -0,0 +1,72 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import de.huxhorn.sulky.ulid.ULID;
+import no.ssb.rawdata.api.RawdataMessage;
+import no.ssb.rawdata.converter.core.convert.ValueInterceptorChain;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static no.ssb.rawdata.converter.app.sirius.TestMessages.HENDELSE_SCHEMA;
+import static no.ssb.rawdata.converter.app.sirius.TestMessages.config;
+import static no.ssb.rawdata.converter.app.sirius.TestMessages.hendelseXml;
+import static no.ssb.rawdata.converter.app.sirius.TestMessages.message;
+
+/**
+ * Converter-level tests of deduplication of stale hendelser, including restarts from a dedup checkpoint
+ */
+public class SiriusRawdataConverterDedupTest {
+
+    private static SiriusRawdataConverter newConverter(Path checkpoint) {
+        SiriusRawdataConverterConfig config = config("2019", HENDELSE_SCHEMA);
+        config.setDedup(true);
+        config.setDedupCheckpointPath(checkpoint.toString());
+        config.setDedupCheckpointIntervalSeconds(3600);
+        return new SiriusRawdataConverter(config, new ValueInterceptorChain());
+    }
+
+    private static RawdataMessage hendelse(long ulid, long sekvensnummer) {
+        return message(new ULID.Value(0, ulid), ulid, "entry", hendelseXml("01010112345", sekvensnummer, "2019"));
+    }
+
+    private static boolean convert(SiriusRawdataConverter converter, RawdataMessage msg) {
+        if (! converter.isConvertible(msg)) {
+            return false;
+        }
+        converter.convertDataElements(msg, (targetItem, record) -> {}, false);
+        return true;
+    }
+
+    @Test
+    void isConvertible_shouldNotRegisterHendelseUntilConverted(@TempDir Path dir) {
+        SiriusRawdataConverter converter = newConverter(dir.resolve("dedup.idx"));
+        RawdataMessage msg = hendelse(1, 5);
+
+        Assertions.assertTrue(converter.isConvertible(msg));
+        Assertions.assertTrue(converter.isConvertible(msg), "Evaluating a message twice should not make it stale");
+        Assertions.assertTrue(convert(converter, msg));
+        Assertions.assertFalse(converter.isConvertible(hendelse(2, 4)));
+        Assertions.assertFalse(converter.isConvertible(hendelse(3, 5)));
+        Assertions.assertTrue(converter.isConvertible(hendelse(4, 6)));
+        converter.close();
+    }
+
+    @Test
+    void restart_shouldConvertRedeliveredMessagesAndSkipStaleNewOnes(@TempDir Path dir) {
+        Path checkpoint = dir.resolve("dedup.idx");
+        SiriusRawdataConverter converter = newConverter(checkpoint);
+        Assertions.assertTrue(convert(converter, hendelse(10, 5)));
+        Assertions.assertTrue(convert(converter, hendelse(20, 6)));
+        converter.close(); // Writes the final checkpoint
+
+        SiriusRawdataConverter restarted = newConverter(checkpoint);
+        Assertions.assertTrue(convert(restarted, hendelse(10, 5)), "Redelivered message before the checkpoint should be converted again");
+        Assertions.assertTrue(convert(restarted, hendelse(20, 6)), "Redelivered message at the checkpoint should be converted again");
+        Assertions.assertFalse(restarted.isConvertible(hendelse(30, 6)), "New message with a converted sekvensnummer should be stale");
+        Assertions.assertTrue(convert(restarted, hendelse(40, 7)));
+        restarted.close();
+    }
+
+}
@@ -0,0 +1,76 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import no.ssb.rawdata.api.RawdataMessage;
+import no.ssb.rawdata.converter.app.sirius.schema.SchemaDescriptor;
+import no.ssb.rawdata.converter.core.convert.ValueInterceptorChain;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static no.ssb.rawdata.converter.app.sirius.TestMessages.config;
+import static no.ssb.rawdata.converter.app.sirius.TestMessages.hendelseElement;
+import static no.ssb.rawdata.converter.app.sirius.TestMessages.hendelseXml;
+import static no.ssb.rawdata.converter.app.sirius.TestMessages.message;
+
+/**
+ * Converter-level tests of schema routing, i.e. several data elements that share the same rawdata item
+ */
+public class SiriusRawdataConverterRoutingTest {
+
+    private SimpleMeterRegistry registry;
+    private SiriusRawdataConverter converter;
+
+    @BeforeEach
+    void setUp() {
+        SiriusRawdataConverterConfig config = config("2019");
+        config.getDataElements().add(periodElement("hendelse2019", "2019"));
+        config.getDataElements().add(periodElement("hendelse2020", "2020"));
+        registry = new SimpleMeterRegistry();
+        converter = new SiriusRawdataConverter(config, new ValueInterceptorChain(), new SiriusConverterMetrics(registry));
+    }
+
+    private static SchemaDescriptor periodElement(String targetItemName, String period) {
+        SchemaDescriptor descriptor = hendelseElement("entry", targetItemName);
+        descriptor.setPeriods(Set.of(period));
+        return descriptor;
+    }
+
+    private List<String> targetItemsOf(RawdataMessage msg) {
+        List<String> targetItems = new ArrayList<>();
+        converter.convertDataElements(msg, (targetItem, record) -> targetItems.add(targetItem), false);
+        return targetItems;
+    }
+
+    private double unrouted() {
+        Counter counter = registry.find(SiriusConverterMetrics.PREFIX + "item.unrouted").tag("item", "entry").counter();
+        return (counter == null) ? 0 : counter.count();
+    }
+
+    @Test
+    void convert_shouldRouteByPeriod() {
+        Assertions.assertEquals(List.of("hendelse2019"), targetItemsOf(message(1, "entry", hendelseXml("1", 1, "2019"))));
+        Assertions.assertEquals(List.of("hendelse2020"), targetItemsOf(message(2, "entry", hendelseXml("1", 2, "2020"))));
+        Assertions.assertEquals(0, unrouted());
+    }
+
+    @Test
+    void convert_itemWithUnknownPeriod_shouldBeCountedAsUnrouted() {
+        Assertions.assertEquals(List.of(), targetItemsOf(message(1, "entry", hendelseXml("1", 1, "2021"))));
+        Assertions.assertEquals(1, unrouted());
+    }
+
+    @Test
+    void convert_itemWithoutNamespace_shouldNotMatchDataElementsWithNamespace() {
+        String xml = hendelseXml("1", 1, "2019").replace(" xmlns=\"urn:no:skatteetaten:datasamarbeid:hendelser:v1\"", "");
+
+        Assertions.assertEquals(List.of(), targetItemsOf(message(1, "entry", xml)));
+        Assertions.assertEquals(1, unrouted());
+    }
+
+}
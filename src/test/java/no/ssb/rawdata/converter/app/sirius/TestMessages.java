@@ -0,0 +1,69 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import de.huxhorn.sulky.ulid.ULID;
+import no.ssb.rawdata.api.RawdataMessage;
+import no.ssb.rawdata.converter.app.sirius.schema.SchemaDescriptor;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Inline rawdata messages and converter configs for converter-level tests
+ */
+class TestMessages {
+
+    static final String HENDELSE_SCHEMA = "sirius-hendelse-v1_3";
+
+    private TestMessages() {}
+
+    static String hendelseXml(String identifikator, long sekvensnummer, String gjelderPeriode) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+          + "<hendelse xmlns=\"urn:no:skatteetaten:datasamarbeid:hendelser:v1\">"
+          + "<sekvensnummer>" + sekvensnummer + "</sekvensnummer>"
+          + "<identifikator>" + identifikator + "</identifikator>"
+          + "<gjelderPeriode>" + gjelderPeriode + "</gjelderPeriode>"
+          + "</hendelse>";
+    }
+
+    static RawdataMessage hendelse(String gjelderPeriode) {
+        return message(1, "entry", hendelseXml("01010112345", 1, gjelderPeriode));
+    }
+
+    /**
+     * @param itemsAndContent rawdata item names, each followed by the item's content
+     */
+    static RawdataMessage message(long position, String... itemsAndContent) {
+        return message(new ULID().nextValue(), position, itemsAndContent);
+    }
+
+    /**
+     * @param ulid the id of the message, which determines its order in the topic
+     */
+    static RawdataMessage message(ULID.Value ulid, long position, String... itemsAndContent) {
+        var builder = RawdataMessage.builder()
+          .ulid(ulid)
+          .orderingGroup("test")
+          .sequenceNumber(position)
+          .position(String.valueOf(position));
+        for (int i = 0; i < itemsAndContent.length; i += 2) {
+            builder.put(itemsAndContent[i], itemsAndContent[i + 1].getBytes(StandardCharsets.UTF_8));
+        }
+        return builder.build();
+    }
+
+    static SiriusRawdataConverterConfig config(String period, String... schemaNames) {
+        SiriusRawdataConverterConfig config = new SiriusRawdataConverterConfig();
+        config.setPeriod(period);
+        for (String schemaName : schemaNames) {
+            config.getDataElements().add(new SchemaDescriptor(schemaName));
+        }
+        return config;
+    }
+
+    static SchemaDescriptor hendelseElement(String rawdataItemName, String targetItemName) {
+        SchemaDescriptor descriptor = new SchemaDescriptor(HENDELSE_SCHEMA);
+        descriptor.setRawdataItemName(rawdataItemName);
+        descriptor.setTargetItemName(targetItemName);
+        return descriptor;
+    }
+
+}
@@ -0,0 +1,68 @@
+package no.ssb.rawdata.converter.app.sirius;
+
+import no.ssb.rawdata.converter.app.sirius.XmlConversionPlan.FieldRef;
+import no.ssb.rawdata.converter.app.sirius.schema.SchemaDescriptor;
+import no.ssb.rawdata.converter.app.sirius.schema.SiriusSchemas;
+import no.ssb.rawdata.converter.core.convert.ValueInterceptorChain;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.util.Utf8;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static no.ssb.rawdata.converter.app.sirius.TestMessages.hendelseXml;
+
+public class XmlConversionPlanTest {
+
+    private static final XmlConversionPlan HENDELSE_PLAN = XmlConversionPlan.compile(
+      SiriusSchemas.getBySchemaDescriptor(new SchemaDescriptor("sirius-hendelse-v1_3")));
+
+    @Test
+    void compile_shouldIndexFieldsByPath() {
+        FieldRef byPath = HENDELSE_PLAN.field("gjelderPeriode").orElseThrow();
+
+        Assertions.assertArrayEquals(new int[] {2}, byPath.getPositions());
+        Assertions.assertEquals("urn:no:skatteetaten:datasamarbeid:hendelser:v1", HENDELSE_PLAN.getRootNamespace());
+    }
+
+    @Test
+    void fieldRef_shouldReadValues() {
+        GenericRecord record = new GenericData.Record(HENDELSE_PLAN.getSchemaAdapter().getSchema());
+        record.put("sekvensnummer", 42L);
+        record.put("gjelderPeriode", new Utf8("2019"));
+
+        Assertions.assertEquals(42L, HENDELSE_PLAN.field("sekvensnummer").orElseThrow().valueOf(record));
+        Assertions.assertEquals(new Utf8("2019"), HENDELSE_PLAN.field("gjelderPeriode").orElseThrow().valueOf(record));
+        Assertions.assertNull(HENDELSE_PLAN.field("hendelsetype").orElseThrow().valueOf(record));
+    }
+
+    @Test
+    void compile_nestedRecords_shouldBeIndexed() {
+        XmlConversionPlan plan = XmlConversionPlan.compile(
+          SiriusSchemas.getBySchemaDescriptor(new SchemaDescriptor("sirius-skattemelding-2020-v8_0")));
+
+        Assertions.assertTrue(plan.field("skjermet").isPresent());
+        Assertions.assertTrue(plan.field("tidsperiode/start").isPresent());
+        Assertions.assertEquals(2, plan.field("tidsperiode/start").orElseThrow().getPositions().length);
+    }
+
+    @Test
+    void decode_maxRecordsReached_shouldStopWithoutReadingFurther() throws Exception {
+        byte[] xml = hendelseXml("01010112345", 1, "2019").getBytes(StandardCharsets.UTF_8);
+        List<GenericRecord> records = new ArrayList<>();
+
+        XmlConversionPlan.DecodeResult unlimited = HENDELSE_PLAN.decode(xml, new ValueInterceptorChain(), 0, records::add);
+        Assertions.assertEquals(1, unlimited.getRecordCount());
+        Assertions.assertFalse(unlimited.isTruncated());
+
+        XmlConversionPlan.DecodeResult capped = HENDELSE_PLAN.decode(xml, new ValueInterceptorChain(), 1, records::add);
+        Assertions.assertEquals(1, capped.getRecordCount());
+        Assertions.assertTrue(capped.isTruncated());
+        Assertions.assertEquals(2, records.size());
+    }
+
+}
@@ -0,0 +1,105 @@
+package no.ssb.rawdata.converter.app.sirius.schema;
+
+import no.ssb.avro.convert.xml.XmlToRecords;
+import no.ssb.rawdata.converter.app.sirius.schema.SchemaProjection.SchemaProjectionException;
+import no.ssb.rawdata.converter.core.convert.ValueInterceptorChain;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class SchemaProjectionTest {
+
+    private static final Schema SKATTEMELDING = SiriusSchemas.getBySchemaDescriptor(
+      new SchemaDescriptor("sirius-skattemelding-2020-v8_0")).getSchema();
+
+    private static List<String> fieldNamesOf(Schema schema) {
+        return schema.getFields().stream().map(Schema.Field::name).collect(Collectors.toList());
+    }
+
+    @Test
+    void project_shouldOnlyKeepSelectedFieldsAndTheirParents() {
+        Schema projected = SchemaProjection.project(SKATTEMELDING, List.of("skjermet", "tidsperiode/start"));
+
+        Assertions.assertEquals(SKATTEMELDING.getFullName(), projected.getFullName());
+        Assertions.assertEquals(List.of("skjermet", "tidsperiode"), fieldNamesOf(projected));
+        Assertions.assertEquals(SKATTEMELDING.getField("skjermet").getProp("source"), projected.getField("skjermet").getProp("source"));
+
+        Schema tidsperiode = projected.getField("tidsperiode").schema().getTypes().stream()
+          .filter(type -> type.getType() == Schema.Type.RECORD)
+          .findFirst().orElseThrow();
+        Assertions.assertEquals(List.of("start"), fieldNamesOf(tidsperiode));
+    }
+
+    @Test
+    void project_unknownField_shouldThrow() {
+        Assertions.assertThrows(SchemaProjectionException.class, () ->
+          SchemaProjection.project(SKATTEMELDING, List.of("skjermet", "doesNotExist"))
+        );
+    }
+
+    @Test
+    void getBySchemaDescriptor_withProjection_shouldMemoizeProjectedSchema() {
+        SchemaDescriptor descriptor = new SchemaDescriptor("sirius-skattemelding-2020-v8_0");
+        descriptor.setProjection(List.of("skjermet"));
+
+        Schema schema1 = SiriusSchemas.getBySchemaDescriptor(descriptor).getSchema();
+        Schema schema2 = SiriusSchemas.getBySchemaDescriptor(descriptor).getSchema();
+
+        Assertions.assertSame(schema1, schema2);
+        Assertions.assertEquals(List.of("skjermet"), fieldNamesOf(schema1));
+    }
+
+    @Test
+    void project_recordKeptWholeAndProjected_shouldThrow() {
+        Schema schema = new Schema.Parser().parse("{\"type\": \"record\", \"name\": \"root\", \"fields\": ["
+          + "{\"name\": \"a\", \"type\": {\"type\": \"record\", \"name\": \"Periode\", \"fields\": ["
+          + "{\"name\": \"start\", \"type\": \"string\"}, {\"name\": \"slutt\", \"type\": \"string\"}]}},"
+          + "{\"name\": \"b\", \"type\": \"Periode\"}]}");
+
+        Assertions.assertThrows(SchemaProjectionException.class, () -> SchemaProjection.project(schema, List.of("a", "b/start")));
+        Assertions.assertThrows(SchemaProjectionException.class, () -> SchemaProjection.project(schema, List.of("a/start", "b")));
+        Assertions.assertEquals(List.of("a", "b"), fieldNamesOf(SchemaProjection.project(schema, List.of("a", "b"))));
+    }
+
+    @Test
+    void getBySchemaDescriptor_projectionWithoutSkjermet_shouldKeepSkjermet() {
+        SchemaDescriptor descriptor = new SchemaDescriptor("sirius-skattemelding-2020-v8_0");
+        descriptor.setProjection(List.of("tidsperiode/start"));
+
+        Assertions.assertEquals(List.of("skjermet", "tidsperiode"), fieldNamesOf(SiriusSchemas.getBySchemaDescriptor(descriptor).getSchema()));
+    }
+
+    @Test
+    void xmlToRecords_projectedSchema_shouldOnlyMaterializeSelectedElements() throws Exception {
+        SchemaDescriptor descriptor = new SchemaDescriptor("sirius-hendelse-v1_3");
+        descriptor.setProjection(List.of("gjelderPeriode", "identifikator"));
+        SchemaAdapter schemaAdapter = SiriusSchemas.getBySchemaDescriptor(descriptor);
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+          + "<hendelse xmlns=\"urn:no:skatteetaten:datasamarbeid:hendelser:v1\">"
+          + "<sekvensnummer>42</sekvensnummer>"
+          + "<identifikator>01010112345</identifikator>"
+          + "<gjelderPeriode>2019</gjelderPeriode>"
+          + "<registreringstidspunkt>2020-09-21T17:35:00Z</registreringstidspunkt>"
+          + "</hendelse>";
+
+        List<GenericRecord> records = new ArrayList<>();
+        try (XmlToRecords xmlToRecords = new XmlToRecords(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)),
+          schemaAdapter.getRootElementName(), schemaAdapter.getSchema(), new ValueInterceptorChain())) {
+            xmlToRecords.iterator().forEachRemaining(records::add);
+        }
+
+        Assertions.assertEquals(1, records.size());
+        GenericRecord record = records.get(0);
+        Assertions.assertEquals(List.of("identifikator", "gjelderPeriode"), fieldNamesOf(record.getSchema()));
+        Assertions.assertEquals("01010112345", String.valueOf(record.get("identifikator")));
+        Assertions.assertEquals("2019", String.valueOf(record.get("gjelderPeriode")));
+    }
+
+}
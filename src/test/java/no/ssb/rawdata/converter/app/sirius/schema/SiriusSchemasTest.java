@@ -0,0 +1,37 @@
+package no.ssb.rawdata.converter.app.sirius.schema;
+
+import no.ssb.rawdata.converter.app.sirius.schema.SiriusSchemas.SchemaNotFoundException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SiriusSchemasTest {
+
+    @Test
+    void getBySchemaDescriptor_shouldIgnoreCaseAndMemoizeSchema() {
+        SchemaAdapter schema1 = SiriusSchemas.getBySchemaDescriptor(new SchemaDescriptor("sirius-hendelse-v1_3"));
+        SchemaAdapter schema2 = SiriusSchemas.getBySchemaDescriptor(new SchemaDescriptor("SIRIUS-HENDELSE-V1_3"));
+
+        Assertions.assertEquals("sirius-hendelse-v1_3", schema2.getSchemaName());
+        Assertions.assertSame(schema1.getSchema(), schema2.getSchema());
+    }
+
+    @Test
+    void getBySchemaDescriptor_withOverrides_shouldMergeOverrides() {
+        SchemaDescriptor descriptor = new SchemaDescriptor("sirius-hendelse-v1_3");
+        descriptor.setTargetItemName("event");
+        descriptor.setOptional(false);
+        SchemaAdapter schema = SiriusSchemas.getBySchemaDescriptor(descriptor);
+
+        Assertions.assertEquals("event", schema.getTargetItemName());
+        Assertions.assertEquals("entry", schema.getRawdataItemName());
+        Assertions.assertFalse(schema.getOptional());
+    }
+
+    @Test
+    void getBySchemaDescriptor_unknownSchema_shouldThrow() {
+        Assertions.assertThrows(SchemaNotFoundException.class, () ->
+          SiriusSchemas.getBySchemaDescriptor(new SchemaDescriptor("sirius-unknown-v1"))
+        );
+    }
+
+}
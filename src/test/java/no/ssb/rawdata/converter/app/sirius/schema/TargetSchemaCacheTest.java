@@ -0,0 +1,45 @@
+package no.ssb.rawdata.converter.app.sirius.schema;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TargetSchemaCacheTest {
+
+    private static final Schema SCHEMA = SchemaBuilder.record("target").namespace("dapla.rawdata.test")
+      .fields().optionalString("foo").endRecord();
+
+    @Test
+    void get_sameKey_shouldOnlyBuildOnce() {
+        TargetSchemaCache cache = new TargetSchemaCache();
+        AtomicInteger builds = new AtomicInteger();
+
+        Schema first = cache.get("key", () -> { builds.incrementAndGet(); return SCHEMA; });
+        Schema second = cache.get("key", () -> { builds.incrementAndGet(); return SCHEMA; });
+
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(1, builds.get());
+    }
+
+    @Test
+    void get_beyondMaxSize_shouldEvict() {
+        TargetSchemaCache cache = new TargetSchemaCache(2);
+        for (int i = 0; i < 10; i++) {
+            cache.get("key" + i, () -> SCHEMA);
+        }
+
+        Assertions.assertTrue(cache.size() <= 2);
+    }
+
+    @Test
+    void fingerprintOf_sameSchema_shouldBeStable() {
+        Schema copy = new Schema.Parser().parse(SCHEMA.toString());
+
+        Assertions.assertEquals(TargetSchemaCache.fingerprintOf(SCHEMA), TargetSchemaCache.fingerprintOf(SCHEMA));
+        Assertions.assertEquals(TargetSchemaCache.fingerprintOf(SCHEMA), TargetSchemaCache.fingerprintOf(copy));
+    }
+
+}
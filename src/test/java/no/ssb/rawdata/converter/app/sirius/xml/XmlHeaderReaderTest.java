@@ -0,0 +1,61 @@
+package no.ssb.rawdata.converter.app.sirius.xml;
+
+import no.ssb.rawdata.converter.app.sirius.xml.XmlHeaderReader.XmlHeaderReaderException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+public class XmlHeaderReaderTest {
+
+    private static final String HENDELSE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+      + "<hendelse xmlns=\"urn:no:skatteetaten:datasamarbeid:hendelser:v1\">"
+      + "<sekvensnummer>42</sekvensnummer>"
+      + "<identifikator>01010112345</identifikator>"
+      + "<gjelderPeriode> 2019 </gjelderPeriode>"
+      + "<registreringstidspunkt>2020-09-21T17:35:00Z</registreringstidspunkt>"
+      + "</hendelse>";
+
+    @Test
+    void childElementValue_existingElement_shouldReturnTrimmedValue() {
+        Assertions.assertEquals(Optional.of("2019"), XmlHeaderReader.childElementValue(bytes(HENDELSE), "gjelderPeriode"));
+    }
+
+    @Test
+    void childElementValue_missingElement_shouldReturnEmpty() {
+        Assertions.assertEquals(Optional.empty(), XmlHeaderReader.childElementValue(bytes(HENDELSE), "hendelsetype"));
+    }
+
+    @Test
+    void childElementValue_nestedElement_shouldNotMatch() {
+        String xml = "<hendelse><detaljer><gjelderPeriode>2019</gjelderPeriode></detaljer></hendelse>";
+        Assertions.assertEquals(Optional.empty(), XmlHeaderReader.childElementValue(bytes(xml), "gjelderPeriode"));
+    }
+
+    @Test
+    void childElementValues_shouldReturnExistingElementsInOnePass() {
+        Assertions.assertEquals(Map.of("sekvensnummer", "42", "gjelderPeriode", "2019"),
+          XmlHeaderReader.childElementValues(bytes(HENDELSE), Set.of("sekvensnummer", "gjelderPeriode", "hendelsetype")));
+    }
+
+    @Test
+    void rootElementNamespace_shouldReturnNamespaceOfRootElement() {
+        Assertions.assertEquals(Optional.of("urn:no:skatteetaten:datasamarbeid:hendelser:v1"), XmlHeaderReader.rootElementNamespace(bytes(HENDELSE)));
+        Assertions.assertEquals(Optional.empty(), XmlHeaderReader.rootElementNamespace(bytes("<hendelse/>")));
+    }
+
+    @Test
+    void childElementValue_malformedXml_shouldThrow() {
+        Assertions.assertThrows(XmlHeaderReaderException.class, () ->
+          XmlHeaderReader.childElementValue(bytes("<hendelse><gjelder"), "gjelderPeriode")
+        );
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+}